@@ -1,14 +1,20 @@
 package se.anyro.bx;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import se.anyro.bx.types.Balance;
 import se.anyro.bx.types.BillPaymentGroup;
@@ -24,6 +30,7 @@ import se.anyro.bx.types.Transaction;
 import se.anyro.bx.types.TransactionType;
 import se.anyro.bx.types.Withdrawal;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -34,40 +41,68 @@ import com.google.gson.JsonObject;
 @SuppressWarnings("serial")
 public class BxApi extends JsonApi {
 
-    private final String BASE_URL = "https://bx.in.th/api/";
-
-    private final String MARKET_DATA = BASE_URL;
-    private final String CURRENCY_PAIRINGS = BASE_URL + "pairing/";
-    private final String ORDER_BOOK = BASE_URL + "orderbook/?";
-    private final String RECENT_TRADES = BASE_URL + "trade/?";
-    private final String TRADE_HISTORY = BASE_URL + "tradehistory/?";
-
-    private final String ORDER = BASE_URL + "order/";
-    private final String CANCEL = BASE_URL + "cancel/";
-    private final String BALANCE = BASE_URL + "balance/";
-    private final String GET_ORDERS = BASE_URL + "getorders/";
-    private final String TRANSACTION_HISTORY = BASE_URL + "history/";
-    private final String DEPOSIT = BASE_URL + "deposit/";
-    private final String WITHDRAWAL = BASE_URL + "withdrawal/";
-    private final String WITHDRAWAL_HISTORY = BASE_URL + "withdrawal-history/";
-    private final String BILLGROUP = BASE_URL + "billgroup/";
-    private final String BILLER = BASE_URL + "biller/";
-    private final String BILLPAY = BASE_URL + "billpay/";
+    /**
+     * Base URL of all endpoints unless changed with {@link Builder#baseUrl(String)}
+     */
+    public static final String DEFAULT_BASE_URL = "https://bx.in.th/api/";
+
+    /**
+     * BX requires a User-Agent. This one is used unless changed with {@link Builder#userAgent(String)}.
+     */
+    public static final String DEFAULT_USER_AGENT = "BX Java API";
+
+    /**
+     * Connection and read timeout in milliseconds unless changed with {@link Builder#timeouts(int, int)}
+     */
+    public static final int DEFAULT_TIMEOUT = 3000;
 
     private static final SimpleDateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
-    private String apiKey;
-    private String apiSecret;
-    private long nonceCounter = System.currentTimeMillis() / 1000 - 1500000000;
+    private final String apiKey;
+    private final String apiSecret;
+    private final String[] urls = new String[Endpoint.values().length];
+    private final String userAgent;
+    private final int[] connectionTimeouts;
+    private final int[] readTimeouts;
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+    private volatile OrderValidator orderValidator;
+    private final AtomicLong nonceCounter;
+
+    /**
+     * Default number of iterations used by {@link #warmUp()}. Enough for the JIT to compile the parsing paths.
+     */
+    public static final int DEFAULT_WARM_UP_ITERATIONS = 1000;
+
+    // Thread-safe and shared by all instances
+    private static final Gson GSON = createGson(new TypeAdapters());
 
-    private static final int CONNECTION_TIMEOUT = 3000;
-    private static final int READ_TIMEOUT = 3000;
+    private static final String WARM_UP_FIXTURES = "/se/anyro/bx/warmup/";
+
+    // MessageDigest.getInstance() does a provider lookup every time so keep one digest per thread
+    private static final ThreadLocal<MessageDigest> SHA256 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 missing"); // Can't happen
+            }
+        }
+    };
 
     /**
      * Constructor for the public API only. Accessible without api key and api secret.
      */
     public BxApi() {
-        super(CONNECTION_TIMEOUT, READ_TIMEOUT);
+        this(Transport.DEFAULT);
+    }
+
+    /**
+     * Constructor for the public API only, using a custom transport, for instance for recording or replaying the
+     * traffic.
+     */
+    public BxApi(Transport transport) {
+        this(null, null, transport, null, null);
     }
 
     /**
@@ -75,9 +110,49 @@ public class BxApi extends JsonApi {
      * https://bx.in.th/account/
      */
     public BxApi(String apiKey, String apiSecret) {
-        this();
-        this.apiKey = apiKey;
-        this.apiSecret = apiSecret;
+        this(apiKey, apiSecret, Transport.DEFAULT);
+    }
+
+    /**
+     * Constructor for using all methods including the private API with a custom transport.
+     */
+    public BxApi(String apiKey, String apiSecret, Transport transport) {
+        this(apiKey, apiSecret, transport, null, null);
+    }
+
+    /**
+     * Constructor used by {@link BxClientPool} to share transport and metrics between accounts.
+     */
+    BxApi(String apiKey, String apiSecret, Transport transport, RequestMetrics metrics, RateLimiter rateLimiter) {
+        this(apiKey, apiSecret, transport, metrics, rateLimiter, newNonceCounter());
+    }
+
+    /**
+     * Same as above but with a nonce sequence that can outlive this instance, so that a new instance for the same api
+     * key continues above the nonces already sent.
+     */
+    BxApi(String apiKey, String apiSecret, Transport transport, RequestMetrics metrics, RateLimiter rateLimiter,
+            AtomicLong nonceCounter) {
+        this(new Builder().credentials(apiKey, apiSecret).transport(transport).metrics(metrics)
+                .rateLimiter(rateLimiter).nonceCounter(nonceCounter));
+    }
+
+    private BxApi(Builder builder) {
+        super(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT, builder.dateFormat != null ? createGson(new TypeAdapters(),
+                builder.dateFormat) : GSON, builder.transport, builder.metrics, builder.rateLimiter);
+        apiKey = builder.apiKey;
+        apiSecret = builder.apiSecret;
+        for (Endpoint endpoint : Endpoint.values()) {
+            urls[endpoint.ordinal()] = builder.baseUrl + endpoint.getPath();
+            coalescer.setWindow(endpoint, builder.coalescingWindows[endpoint.ordinal()]);
+        }
+        userAgent = builder.userAgent;
+        connectionTimeouts = builder.connectionTimeouts.clone();
+        readTimeouts = builder.readTimeouts.clone();
+        orderValidator = builder.orderValidator;
+        nonceCounter = builder.nonceCounter != null ? builder.nonceCounter : newNonceCounter();
+        setTracer(builder.tracer);
+        setDecoderMode(builder.decoderMode);
     }
 
     /**
@@ -87,7 +162,7 @@ public class BxApi extends JsonApi {
      * @return ticker data of all currency pairings
      */
     public Ticker[] getMarketData() throws IOException {
-        MarketData marketData = callMethod(MARKET_DATA, MarketData.class);
+        MarketData marketData = callPublic(Endpoint.MARKET_DATA, 0, "", MarketData.class);
         return marketData.values().toArray(new Ticker[marketData.size()]);
     }
 
@@ -97,8 +172,13 @@ public class BxApi extends JsonApi {
      * @return all available currency pairings, including their pairing_id which is required for some other API calls
      */
     public Pairing[] getCurrencyPairings() throws IOException {
-        Pairings pairings = callMethod(CURRENCY_PAIRINGS, Pairings.class);
-        return pairings.values().toArray(new Pairing[pairings.size()]);
+        Pairings pairings = callPublic(Endpoint.CURRENCY_PAIRINGS, 0, "", Pairings.class);
+        Pairing[] result = pairings.values().toArray(new Pairing[pairings.size()]);
+        OrderValidator validator = orderValidator;
+        if (validator != null) {
+            validator.setPairings(result);
+        }
+        return result;
     }
 
     /**
@@ -107,7 +187,7 @@ public class BxApi extends JsonApi {
      * @return a list of all buy and sell orders in the order book for the selected pairing market
      */
     public OrderBook getOrderBook(int pairingId) throws IOException {
-        return callMethod(ORDER_BOOK + "pairing=" + pairingId, OrderBook.class);
+        return callPublic(Endpoint.ORDER_BOOK, pairingId, "pairing=" + pairingId, OrderBook.class);
     }
 
     /**
@@ -116,7 +196,7 @@ public class BxApi extends JsonApi {
      * @return a list of 10 most recent trades, and top 10 asks and bids in orderbook
      */
     public RecentTrades getRecentTrades(int pairingId) throws IOException {
-        return callMethod(RECENT_TRADES + "pairing=" + pairingId, RecentTrades.class);
+        return callPublic(Endpoint.RECENT_TRADES, pairingId, "pairing=" + pairingId, RecentTrades.class);
     }
 
     /**
@@ -127,8 +207,8 @@ public class BxApi extends JsonApi {
      * @return Weighted Average, Volume, Open, Close, Low and High prices for the specified date
      */
     public TradeData getHistoricalTradeData(int pairingId, String date) throws IOException {
-        HistoricalTradeData response = callMethod(TRADE_HISTORY + "pairing=" + pairingId + "&date=" + date,
-                HistoricalTradeData.class);
+        HistoricalTradeData response = callPublic(Endpoint.TRADE_HISTORY, pairingId, "pairing=" + pairingId
+                + "&date=" + date, HistoricalTradeData.class);
         return response.data;
     }
 
@@ -147,12 +227,37 @@ public class BxApi extends JsonApi {
      * @param twofa
      *            Optional 2 Factor Authentication value
      * @return order-id (or zero if the order is immediately executed)
+     * @throws OrderValidationException
+     *             if an {@link OrderValidator} is set and rejects the order, also when the funds are already reserved by
+     *             an order in progress on another thread. Nothing is sent in that case.
      */
     public int createOrder(int pairingId, OrderType type, BigDecimal amount, BigDecimal rate, String twofa)
             throws IOException {
-        Order order = callMethod(ORDER, createSecurityParams(twofa) + "&pairing=" + pairingId + "&type=" + type
-                + "&amount=" + amount + "&rate=" + rate, Order.class);
-        return order.order_id;
+        String parameters = createSecurityParams(twofa) + "&pairing=" + pairingId + "&type=" + type + "&amount="
+                + amount + "&rate=" + rate;
+        OrderValidator validator = orderValidator;
+        if (validator == null) {
+            return callPrivate(Endpoint.ORDER, pairingId, parameters, Order.class).order_id;
+        }
+        validator.reserve(pairingId, type, amount, rate);
+        AtomicBoolean sending = new AtomicBoolean();
+        boolean keep = false;
+        try {
+            Order order = callMethod(Endpoint.ORDER, pairingId, url(Endpoint.ORDER), parameters, Order.class,
+                    sending);
+            keep = true;
+            return order.order_id;
+        } catch (BxApiException e) {
+            throw e; // Rejected by BX
+        } catch (IOException | RuntimeException e) {
+            // Once sent the order might exist, so keep the reservation until the balances are fetched again
+            keep = sending.get();
+            throw e;
+        } finally {
+            if (!keep) {
+                validator.release(pairingId, type, amount, rate);
+            }
+        }
     }
 
     /**
@@ -186,8 +291,8 @@ public class BxApi extends JsonApi {
                 orderIds += orderId[i];
             }
         }
-        callMethod(CANCEL, createSecurityParams(twofa) + "&pairing=" + pairingId + "&order_id=" + orderIds,
-                Order.class);
+        callPrivate(Endpoint.CANCEL, pairingId, createSecurityParams(twofa) + "&pairing=" + pairingId
+                + "&order_id=" + orderIds, Order.class);
     }
 
     /**
@@ -196,7 +301,12 @@ public class BxApi extends JsonApi {
      * @return A map of the available currencies and their balances etc.
      */
     public Map<String, Balance> getBalances(String twofa) throws IOException {
-        Balances response = callMethod(BALANCE, createSecurityParams(twofa).toString(), Balances.class);
+        Balances response = callPrivate(Endpoint.BALANCE, 0, createSecurityParams(twofa).toString(),
+                Balances.class);
+        OrderValidator validator = orderValidator;
+        if (validator != null) {
+            validator.setBalances(response.balance);
+        }
         return response.balance;
     }
 
@@ -229,7 +339,8 @@ public class BxApi extends JsonApi {
             parameters.append("&type=").append(type);
         }
 
-        Orders orders = callMethod(GET_ORDERS, parameters.toString(), Orders.class);
+        Orders orders = callPrivate(Endpoint.GET_ORDERS, pairingId != null ? pairingId : 0, parameters.toString(),
+                Orders.class);
         return orders.orders;
     }
 
@@ -261,12 +372,13 @@ public class BxApi extends JsonApi {
             parameters.append("&type=").append(type);
         }
         if (startDate != null) {
-            parameters.append("&start_date=").append(DATE_FORMATTER.format(startDate));
+            parameters.append("&start_date=").append(formatDate(startDate));
         }
         if (endDate != null) {
-            parameters.append("&end_date=").append(DATE_FORMATTER.format(endDate));
+            parameters.append("&end_date=").append(formatDate(endDate));
         }
-        TransactionHistory response = callMethod(TRANSACTION_HISTORY, parameters.toString(), TransactionHistory.class);
+        TransactionHistory response = callPrivate(Endpoint.TRANSACTION_HISTORY, 0, parameters.toString(),
+                TransactionHistory.class);
         return response.transactions;
     }
 
@@ -285,7 +397,7 @@ public class BxApi extends JsonApi {
         if (generateNew) {
             parameters.append("&new=true");
         }
-        DepositAddress response = callMethod(DEPOSIT, parameters.toString(), DepositAddress.class);
+        DepositAddress response = callPrivate(Endpoint.DEPOSIT, 0, parameters.toString(), DepositAddress.class);
         return response.address;
     }
 
@@ -316,7 +428,7 @@ public class BxApi extends JsonApi {
         if (bankId != null) {
             parameters.append("&bank_id=").append(bankId);
         }
-        Withdrawal response = callMethod(WITHDRAWAL, parameters.toString(), Withdrawal.class);
+        Withdrawal response = callPrivate(Endpoint.WITHDRAWAL, 0, parameters.toString(), Withdrawal.class);
         return response.withdrawal_id;
     }
 
@@ -326,8 +438,8 @@ public class BxApi extends JsonApi {
      * @return A map of the available currencies and their balances etc.
      */
     public Withdrawal[] getWithdrawalHistory(String twofa) throws IOException {
-        WithdrawalHistory history = callMethod(WITHDRAWAL_HISTORY, createSecurityParams(twofa).toString(),
-                WithdrawalHistory.class);
+        WithdrawalHistory history = callPrivate(Endpoint.WITHDRAWAL_HISTORY, 0, createSecurityParams(twofa)
+                .toString(), WithdrawalHistory.class);
         return history.withdrawals;
     }
 
@@ -337,7 +449,7 @@ public class BxApi extends JsonApi {
      * @return payment group types
      */
     public BillPaymentGroup[] getBillPaymentGroupTypes(String twofa) throws IOException {
-        BillPaymentGroups response = callMethod(BILLGROUP, createSecurityParams(twofa).toString(),
+        BillPaymentGroups response = callPrivate(Endpoint.BILLGROUP, 0, createSecurityParams(twofa).toString(),
                 BillPaymentGroups.class);
         return response.groups;
     }
@@ -350,8 +462,8 @@ public class BxApi extends JsonApi {
      * @return payment service providers, for instance phone carriers
      */
     public BillPaymentServiceProvider[] getBillPaymentServiceProviders(int groupId, String twofa) throws IOException {
-        BillPaymentServiceProviders response = callMethod(BILLER, createSecurityParams(twofa) + "&group_id="
-                + groupId, BillPaymentServiceProviders.class);
+        BillPaymentServiceProviders response = callPrivate(Endpoint.BILLER, 0, createSecurityParams(twofa)
+                + "&group_id=" + groupId, BillPaymentServiceProviders.class);
         return response.providers;
     }
 
@@ -370,15 +482,111 @@ public class BxApi extends JsonApi {
      */
     public int createBillPayment(int biller, BigDecimal amount, String account, String twofa)
             throws IOException {
-        WithdrawalId response = callMethod(BILLPAY, createSecurityParams(twofa) + "&biller=" + biller + "&amount="
-                + amount + "&account=" + account, WithdrawalId.class);
+        WithdrawalId response = callPrivate(Endpoint.BILLPAY, 0, createSecurityParams(twofa) + "&biller=" + biller
+                + "&amount=" + amount + "&account=" + account, WithdrawalId.class);
         return response.withdrawal_id;
     }
 
+    /**
+     * Let concurrent identical calls to a public endpoint share one request and the same result. Since the result
+     * objects are shared between the callers they must not be modified.
+     * 
+     * @param endpoint
+     *            Any public endpoint
+     * @param millis
+     *            0 to only share requests in flight, more to also reuse the result of a request for that many
+     *            milliseconds after it completed, or negative to turn coalescing off again
+     */
+    public void setCoalescingWindow(Endpoint endpoint, long millis) {
+        if (!endpoint.isPublic()) {
+            throw new IllegalArgumentException("Only public endpoints can be coalesced");
+        }
+        coalescer.setWindow(endpoint, millis);
+    }
+
+    /**
+     * Check orders locally before they are sent. The validator gets the pairings and balances of every following call
+     * to {@link #getCurrencyPairings()} and {@link #getBalances(String)}, so call those once to fill it.
+     * 
+     * @param validator
+     *            The validator to use, or null to send orders unchecked
+     */
+    public void setOrderValidator(OrderValidator validator) {
+        orderValidator = validator;
+    }
+
+    public OrderValidator getOrderValidator() {
+        return orderValidator;
+    }
+
+    /**
+     * Warm up with local data only. Same as {@code warmUp(DEFAULT_WARM_UP_ITERATIONS, false)}.
+     */
+    public void warmUp() throws IOException {
+        warmUp(DEFAULT_WARM_UP_ITERATIONS, false);
+    }
+
+    /**
+     * Prepare for latency-critical calls by doing the one-time work that otherwise slows down the first real calls:
+     * class loading, creation of the type adapters, the SHA-256 provider lookup and JIT compilation of the parsing
+     * paths. The parsing is done on bundled fixtures with typical responses, decoded the same way as real responses
+     * with the current {@link JsonApi.DecoderMode}, so nothing is sent to BX unless connect is true.
+     * 
+     * @param iterations
+     *            Number of times each fixture is parsed and signed
+     * @param connect
+     *            Set to true to also resolve the host and open a TLS connection to BX with a call to
+     *            {@link #getCurrencyPairings()}. The connection is kept alive for the calls that follow.
+     */
+    public void warmUp(int iterations, boolean connect) throws IOException {
+        byte[] marketData = readFixture("marketdata.json");
+        byte[] pairings = readFixture("pairing.json");
+        byte[] orderBook = readFixture("orderbook.json");
+        byte[] recentTrades = readFixture("trade.json");
+        byte[] order = readFixture("order.json");
+        byte[] balances = readFixture("balance.json");
+        byte[] orders = readFixture("getorders.json");
+
+        for (int i = 0; i < iterations; ++i) {
+            parse(marketData, MarketData.class);
+            parse(pairings, Pairings.class);
+            parse(orderBook, OrderBook.class);
+            parse(recentTrades, RecentTrades.class);
+            parse(order, Order.class);
+            parse(balances, Balances.class);
+            parse(orders, Orders.class);
+            sha256("warmup" + i);
+        }
+
+        if (connect) {
+            InetAddress.getByName(new URL(url(Endpoint.MARKET_DATA)).getHost());
+            getCurrencyPairings();
+        }
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        try (InputStream in = BxApi.class.getResourceAsStream(WARM_UP_FIXTURES + name)) {
+            if (in == null) {
+                throw new IOException("Missing warm-up fixture " + name);
+            }
+            return IoUtils.readFully(in);
+        }
+    }
+
+    @Override
+    protected int getConnectionTimeout(Endpoint endpoint) {
+        return endpoint != null ? connectionTimeouts[endpoint.getCategory().ordinal()] : DEFAULT_TIMEOUT;
+    }
+
+    @Override
+    protected int getReadTimeout(Endpoint endpoint) {
+        return endpoint != null ? readTimeouts[endpoint.getCategory().ordinal()] : DEFAULT_TIMEOUT;
+    }
+
     @Override
     protected void setConnectionProperties(HttpURLConnection con) {
         // BX requires User-Agent
-        con.setRequestProperty("User-Agent", "BX Java API");
+        con.setRequestProperty("User-Agent", userAgent);
     }
 
     /*
@@ -395,11 +603,45 @@ public class BxApi extends JsonApi {
                 throw new BxApiException(responseCode, error);
             }
         }
+        JsonElement successElement = response.get("success");
+        if (successElement != null && successElement.isJsonPrimitive()
+                && successElement.getAsJsonPrimitive().isBoolean() && !successElement.getAsBoolean()) {
+            throw new BxApiException(responseCode, "Request failed");
+        }
         if (responseCode >= 300) {
             throw new HttpResponseException(responseCode, con.getResponseMessage());
         }
     }
 
+    /**
+     * Call a public endpoint, sharing the request with identical calls if coalescing is enabled.
+     */
+    private <T> T callPublic(final Endpoint endpoint, final int pairingId, String query,
+            final Class<T> responseClass) throws IOException {
+        final String url = url(endpoint) + query;
+        if (!coalescer.isEnabled(endpoint)) {
+            return callMethod(endpoint, pairingId, url, responseClass);
+        }
+        return coalescer.call(endpoint, url, new RequestCoalescer.Call<T>() {
+            @Override
+            public T call() throws IOException {
+                return callMethod(endpoint, pairingId, url, responseClass);
+            }
+        });
+    }
+
+    /**
+     * Call a private endpoint by posting the parameters.
+     */
+    private <T> T callPrivate(Endpoint endpoint, int pairingId, String parameters, Class<T> responseClass)
+            throws IOException {
+        return callMethod(endpoint, pairingId, url(endpoint), parameters, responseClass);
+    }
+
+    private String url(Endpoint endpoint) {
+        return urls[endpoint.ordinal()];
+    }
+
     /**
      * Build common security parameters such as nonce and signature.
      */
@@ -419,18 +661,49 @@ public class BxApi extends JsonApi {
         return parameters;
     }
 
-    private long nextNonce() {
-        return ++nonceCounter;
+    // SimpleDateFormat isn't thread-safe
+    private static String formatDate(Date date) {
+        synchronized (DATE_FORMATTER) {
+            return DATE_FORMATTER.format(date);
+        }
     }
 
-    private static String sha256(String data) {
-        try {
-            MessageDigest hasher = MessageDigest.getInstance("SHA-256");
-            hasher.update(data.getBytes());
-            return toHex(hasher.digest());
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException("SHA-256 missing"); // Can't happen
+    boolean hasSecret(String secret) {
+        return apiSecret != null && apiSecret.equals(secret);
+    }
+
+    long nextNonce() {
+        return nonceCounter.incrementAndGet();
+    }
+
+    /**
+     * BX requires increasing nonces per api key, so start from the time to stay above the nonces of earlier runs
+     */
+    static AtomicLong newNonceCounter() {
+        return new AtomicLong(System.currentTimeMillis() / 1000 - 1500000000);
+    }
+
+    @Override
+    protected long getNonce(String parameters) {
+        int index = parameters.indexOf("nonce=");
+        if (index < 0) {
+            return 0;
         }
+        long nonce = 0;
+        for (int i = index + 6; i < parameters.length(); ++i) {
+            char c = parameters.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            nonce = nonce * 10 + (c - '0');
+        }
+        return nonce;
+    }
+
+    private static String sha256(String data) {
+        MessageDigest hasher = SHA256.get();
+        hasher.update(data.getBytes());
+        return toHex(hasher.digest());
     }
 
     private static String toHex(byte[] data) {
@@ -442,48 +715,232 @@ public class BxApi extends JsonApi {
     }
 
     /*
-     * Helper classes for parsing some responses
+     * Helper classes for parsing some responses. Package-private so TypeAdapters can create them.
      */
 
-    private static class MarketData extends HashMap<Integer, Ticker> {
+    static class MarketData extends HashMap<Integer, Ticker> {
     }
 
-    private static class Pairings extends HashMap<Integer, Pairing> {
+    static class Pairings extends HashMap<Integer, Pairing> {
     }
 
-    private class Balances {
+    static class Balances {
         public HashMap<String, Balance> balance; // Map with currency code as keys
     }
 
-    private class HistoricalTradeData {
+    static class HistoricalTradeData {
         public TradeData data;
     }
 
-    private static class Orders {
+    static class Orders {
         public Order[] orders;
     }
 
-    private static class TransactionHistory {
+    static class TransactionHistory {
         public Transaction[] transactions;
     }
 
-    private static class DepositAddress {
+    static class DepositAddress {
         public String address;
     }
 
-    private static class WithdrawalId {
+    static class WithdrawalId {
         public int withdrawal_id;
     }
 
-    public class WithdrawalHistory {
+    public static class WithdrawalHistory {
         public Withdrawal[] withdrawals;
     }
 
-    private static class BillPaymentGroups {
+    static class BillPaymentGroups {
         public BillPaymentGroup[] groups;
     }
 
-    private static class BillPaymentServiceProviders {
+    static class BillPaymentServiceProviders {
         public BillPaymentServiceProvider[] providers;
     }
-}
\ No newline at end of file
+
+    /**
+     * Configures a new {@link BxApi}. Everything not set gets the same defaults as with the constructors.
+     * 
+     * <pre>
+     * BxApi bx = new BxApi.Builder()
+     *         .credentials(apiKey, apiSecret)
+     *         .timeouts(Endpoint.Category.TRADING, 1000, 1000)
+     *         .timeouts(Endpoint.Category.HISTORY, 5000, 30000)
+     *         .decoderMode(DecoderMode.STREAMING)
+     *         .coalescingWindow(Endpoint.MARKET_DATA, 500)
+     *         .build();
+     * </pre>
+     */
+    public static class Builder {
+
+        private String apiKey;
+        private String apiSecret;
+        private String baseUrl = DEFAULT_BASE_URL;
+        private String userAgent = DEFAULT_USER_AGENT;
+        private String dateFormat; // Null for the default
+        private final int[] connectionTimeouts = new int[Endpoint.Category.values().length];
+        private final int[] readTimeouts = new int[Endpoint.Category.values().length];
+        private Transport transport = Transport.DEFAULT;
+        private DecoderMode decoderMode = DecoderMode.TREE;
+        private final long[] coalescingWindows = new long[Endpoint.values().length];
+        private RequestMetrics metrics;
+        private Tracer tracer;
+        private RateLimiter rateLimiter;
+        private OrderValidator orderValidator;
+        private AtomicLong nonceCounter; // Null for a new sequence
+
+        public Builder() {
+            Arrays.fill(connectionTimeouts, DEFAULT_TIMEOUT);
+            Arrays.fill(readTimeouts, DEFAULT_TIMEOUT);
+            Arrays.fill(coalescingWindows, RequestCoalescer.DISABLED);
+        }
+
+        /**
+         * Needed for the private API. You can create your API key and secret at https://bx.in.th/account/
+         */
+        public Builder credentials(String apiKey, String apiSecret) {
+            this.apiKey = apiKey;
+            this.apiSecret = apiSecret;
+            return this;
+        }
+
+        /**
+         * @param baseUrl
+         *            URL that the endpoint paths are appended to, for instance a proxy. Default
+         *            {@value BxApi#DEFAULT_BASE_URL}
+         */
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+            return this;
+        }
+
+        /**
+         * Default {@value BxApi#DEFAULT_USER_AGENT}
+         */
+        public Builder userAgent(String userAgent) {
+            if (userAgent == null || userAgent.isEmpty()) {
+                throw new IllegalArgumentException("BX requires a User-Agent");
+            }
+            this.userAgent = userAgent;
+            return this;
+        }
+
+        /**
+         * @param dateFormat
+         *            Pattern of the dates in the responses, for {@link java.text.SimpleDateFormat}
+         */
+        public Builder dateFormat(String dateFormat) {
+            this.dateFormat = dateFormat;
+            return this;
+        }
+
+        /**
+         * Set the timeouts of all endpoints.
+         * 
+         * @param connectionMillis
+         *            Connection timeout in milliseconds
+         * @param readMillis
+         *            Timeout for each read in milliseconds
+         */
+        public Builder timeouts(int connectionMillis, int readMillis) {
+            for (Endpoint.Category category : Endpoint.Category.values()) {
+                timeouts(category, connectionMillis, readMillis);
+            }
+            return this;
+        }
+
+        /**
+         * Set the timeouts of one category of endpoints, for instance shorter for trading and longer for history.
+         * 
+         * @param connectionMillis
+         *            Connection timeout in milliseconds
+         * @param readMillis
+         *            Timeout for each read in milliseconds
+         */
+        public Builder timeouts(Endpoint.Category category, int connectionMillis, int readMillis) {
+            if (connectionMillis < 0 || readMillis < 0) {
+                throw new IllegalArgumentException("Negative timeout");
+            }
+            connectionTimeouts[category.ordinal()] = connectionMillis;
+            readTimeouts[category.ordinal()] = readMillis;
+            return this;
+        }
+
+        /**
+         * @param transport
+         *            Opens the connections, for instance for recording or replaying the traffic
+         */
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @see JsonApi#setDecoderMode(DecoderMode)
+         */
+        public Builder decoderMode(DecoderMode decoderMode) {
+            this.decoderMode = decoderMode;
+            return this;
+        }
+
+        /**
+         * Share the response of a public endpoint between identical calls made while a request is in flight or
+         * within the window after it completed. This is the only response cache in the client. There is no separate
+         * cache to configure and private endpoints are never cached.
+         * 
+         * @see BxApi#setCoalescingWindow(Endpoint, long)
+         */
+        public Builder coalescingWindow(Endpoint endpoint, long millis) {
+            if (!endpoint.isPublic()) {
+                throw new IllegalArgumentException("Only public endpoints can be coalesced");
+            }
+            coalescingWindows[endpoint.ordinal()] = millis;
+            return this;
+        }
+
+        /**
+         * @param metrics
+         *            Counters to update for each request. Can be shared between instances.
+         */
+        public Builder metrics(RequestMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @see JsonApi#setTracer(Tracer)
+         */
+        public Builder tracer(Tracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * @param rateLimiter
+         *            Limit of the request rate. Can be shared between instances.
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * @see BxApi#setOrderValidator(OrderValidator)
+         */
+        public Builder orderValidator(OrderValidator orderValidator) {
+            this.orderValidator = orderValidator;
+            return this;
+        }
+
+        Builder nonceCounter(AtomicLong nonceCounter) {
+            this.nonceCounter = nonceCounter;
+            return this;
+        }
+
+        public BxApi build() {
+            return new BxApi(this);
+        }
+    }
+}
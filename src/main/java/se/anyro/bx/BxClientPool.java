@@ -0,0 +1,123 @@
+package se.anyro.bx;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates and keeps one {@link BxApi} per account. All instances share the transport, the JSON type adapters and the
+ * request metrics, while each account has its own nonce sequence and rate limit. The nonce sequence of an api key is
+ * kept by the pool even after {@link #removeAccount(String)}, so an account added again never reuses a nonce.
+ *
+ * <pre>
+ * BxClientPool pool = new BxClientPool(Transport.DEFAULT, 5, 10);
+ * BxApi account = pool.getAccount(apiKey, apiSecret);
+ * </pre>
+ */
+public class BxClientPool {
+
+    private final Transport transport;
+    private final double requestsPerSecond;
+    private final int burst;
+    private final RequestMetrics metrics = new RequestMetrics();
+    private final ConcurrentMap<String, BxApi> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> nonceCounters = new ConcurrentHashMap<>();
+    private final BxApi publicApi;
+
+    /**
+     * Pool using the default transport without rate limits.
+     */
+    public BxClientPool() {
+        this(Transport.DEFAULT, 0, 0);
+    }
+
+    /**
+     * @param transport
+     *            Shared by all accounts
+     * @param requestsPerSecond
+     *            Rate limit of each account and of the public API. Zero for no limit.
+     * @param burst
+     *            Number of requests each account can make at once after being idle
+     */
+    public BxClientPool(Transport transport, double requestsPerSecond, int burst) {
+        this.transport = transport;
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        publicApi = new BxApi(null, null, transport, metrics, createRateLimiter());
+    }
+
+    /**
+     * @return an instance for the public API only
+     */
+    public BxApi getPublic() {
+        return publicApi;
+    }
+
+    /**
+     * Get the instance of an account, creating it if needed.
+     *
+     * @throws IllegalArgumentException
+     *             if the account is already in the pool with another secret
+     */
+    public BxApi getAccount(String apiKey, String apiSecret) {
+        if (apiKey == null || apiSecret == null) {
+            throw new IllegalArgumentException("Missing api key/secret");
+        }
+        BxApi account = accounts.get(apiKey);
+        if (account == null) {
+            BxApi created = new BxApi(apiKey, apiSecret, transport, metrics, createRateLimiter(),
+                    getNonceCounter(apiKey));
+            account = accounts.putIfAbsent(apiKey, created);
+            if (account == null) {
+                account = created;
+            }
+        }
+        if (!account.hasSecret(apiSecret)) {
+            throw new IllegalArgumentException("Api key already added with another secret");
+        }
+        return account;
+    }
+
+    /**
+     * @return the instance of an account or null if not created yet
+     */
+    public BxApi getAccount(String apiKey) {
+        return accounts.get(apiKey);
+    }
+
+    /**
+     * Remove an account from the pool. Instances already handed out keep working and share the nonce sequence with
+     * the instance created if the account is added again.
+     */
+    public void removeAccount(String apiKey) {
+        accounts.remove(apiKey);
+    }
+
+    public Collection<BxApi> getAccounts() {
+        return accounts.values();
+    }
+
+    /**
+     * @return request counters of all accounts together
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    private AtomicLong getNonceCounter(String apiKey) {
+        AtomicLong counter = nonceCounters.get(apiKey);
+        if (counter == null) {
+            AtomicLong created = BxApi.newNonceCounter();
+            counter = nonceCounters.putIfAbsent(apiKey, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    private RateLimiter createRateLimiter() {
+        return requestsPerSecond > 0 ? new RateLimiter(requestsPerSecond, Math.max(1, burst)) : null;
+    }
+}
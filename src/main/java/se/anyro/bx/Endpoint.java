@@ -0,0 +1,68 @@
+package se.anyro.bx;
+
+/**
+ * The methods of the BX API
+ */
+public enum Endpoint {
+
+    // Public API
+    MARKET_DATA("", true, Category.MARKET),
+    CURRENCY_PAIRINGS("pairing/", true, Category.MARKET),
+    ORDER_BOOK("orderbook/?", true, Category.MARKET),
+    RECENT_TRADES("trade/?", true, Category.MARKET),
+    TRADE_HISTORY("tradehistory/?", true, Category.HISTORY),
+
+    // Private API
+    ORDER("order/", false, Category.TRADING),
+    CANCEL("cancel/", false, Category.TRADING),
+    BALANCE("balance/", false, Category.ACCOUNT),
+    GET_ORDERS("getorders/", false, Category.TRADING),
+    TRANSACTION_HISTORY("history/", false, Category.HISTORY),
+    DEPOSIT("deposit/", false, Category.ACCOUNT),
+    WITHDRAWAL("withdrawal/", false, Category.ACCOUNT),
+    WITHDRAWAL_HISTORY("withdrawal-history/", false, Category.HISTORY),
+
+    // Private Bill Payment API
+    BILLGROUP("billgroup/", false, Category.ACCOUNT),
+    BILLER("biller/", false, Category.ACCOUNT),
+    BILLPAY("billpay/", false, Category.ACCOUNT);
+
+    /**
+     * Groups of endpoints with similar latency needs, for instance for setting timeouts with
+     * {@link BxApi.Builder#timeouts(Category, int, int)}.
+     */
+    public enum Category {
+        MARKET, // Public market data
+        TRADING, // Placing, cancelling and listing orders
+        ACCOUNT, // Balances, deposits, withdrawals and bill payments
+        HISTORY // Bulk history fetches
+    }
+
+    private final String path;
+    private final boolean isPublic;
+    private final Category category;
+
+    private Endpoint(String path, boolean isPublic, Category category) {
+        this.path = path;
+        this.isPublic = isPublic;
+        this.category = category;
+    }
+
+    /**
+     * @return the path relative to the base URL of the API
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * @return true if no api key is needed
+     */
+    public boolean isPublic() {
+        return isPublic;
+    }
+}
@@ -0,0 +1,122 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reader for {@link JsonApi.DecoderMode#STREAMING} that hides the "error" and "success" fields of the top level object
+ * from the type adapters and keeps them aside, so the response can be decoded straight from the stream and still be
+ * checked for errors afterwards. The usual {@code "error":null} and {@code "success":true} of successful responses
+ * are dropped without allocating anything.
+ */
+class EnvelopeReader extends JsonReader {
+
+    private static final JsonParser PARSER = new JsonParser();
+
+    private int depth;
+    private boolean topLevelObject;
+    private String pendingName; // Next name of the top level object, already read by hasNext()
+    private JsonObject envelope;
+
+    EnvelopeReader(Reader in) {
+        super(in);
+    }
+
+    /**
+     * @return the error fields found in the response, or null if none indicated an error
+     */
+    JsonObject getEnvelope() {
+        return envelope;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        super.beginObject();
+        if (depth++ == 0) {
+            topLevelObject = true;
+        }
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        super.endObject();
+        --depth;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        super.beginArray();
+        ++depth;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        super.endArray();
+        --depth;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        if (pendingName != null) {
+            return true;
+        }
+        if (depth != 1 || !topLevelObject) {
+            return super.hasNext();
+        }
+        while (super.hasNext()) {
+            String name = super.nextName();
+            if (name.equals("error")) {
+                readError(name);
+            } else if (name.equals("success")) {
+                readSuccess(name);
+            } else {
+                pendingName = name;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        if (pendingName != null) {
+            String name = pendingName;
+            pendingName = null;
+            return name;
+        }
+        return super.nextName();
+    }
+
+    private void readError(String name) throws IOException {
+        JsonToken token = peek();
+        if (token == JsonToken.NULL) {
+            nextNull();
+        } else if (token == JsonToken.STRING) {
+            keep(name, new JsonPrimitive(nextString()));
+        } else {
+            keep(name, PARSER.parse(this));
+        }
+    }
+
+    private void readSuccess(String name) throws IOException {
+        if (peek() != JsonToken.BOOLEAN) {
+            skipValue(); // Anything but a literal false isn't an error
+        } else if (!nextBoolean()) {
+            keep(name, new JsonPrimitive(false));
+        }
+    }
+
+    private void keep(String name, JsonElement value) {
+        if (envelope == null) {
+            envelope = new JsonObject();
+        }
+        envelope.add(name, value);
+    }
+}
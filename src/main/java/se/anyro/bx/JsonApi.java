@@ -1,27 +1,65 @@
 package se.anyro.bx;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapterFactory;
 
 /**
  * Simple base class for calling APIs that return JSON data.
  */
 public class JsonApi {
 
+    /**
+     * How responses are turned into objects.
+     */
+    public enum DecoderMode {
+        /**
+         * Parse into a JSON tree, check it for errors and then convert it into objects. The default.
+         */
+        TREE,
+        /**
+         * Read the response into objects straight from the stream without building a JSON tree. The "error" and
+         * "success" fields of the response are set aside while reading and handed to the error check afterwards, but
+         * only when they indicate an error or the response code does.
+         */
+        STREAMING
+    }
+
+    private static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd' 'HH:mm:ss";
+
+    private static final JsonParser PARSER = new JsonParser();
+
+    // One reusable event per thread to avoid allocations while tracing
+    private static final ThreadLocal<TraceEvent> TRACE_EVENTS = new ThreadLocal<TraceEvent>() {
+        @Override
+        protected TraceEvent initialValue() {
+            return new TraceEvent();
+        }
+    };
+
     private final int CONNECTION_TIMEOUT;
     private final int READ_TIMEOUT;
-    private final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd' 'HH:mm:ss").create();
-    private final JsonParser PARSER = new JsonParser();
+    private final Gson GSON;
+    private final Transport transport;
+    private final RequestMetrics metrics;
+    private final RateLimiter rateLimiter;
+    private volatile Tracer tracer;
+    private volatile DecoderMode decoderMode = DecoderMode.TREE;
     
     /**
      * Constructor for the public API only. Accessible without api key and api secret.
@@ -32,8 +70,74 @@ public class JsonApi {
      *            timeout for each read in milliseconds
      */
     protected JsonApi(int connectionTimeout, int readTimeout) {
+        this(connectionTimeout, readTimeout, null);
+    }
+
+    /**
+     * @param connectionTimeout
+     *            connection timeout in milliseconds
+     * @param readTimeout
+     *            timeout for each read in milliseconds
+     * @param typeAdapterFactory
+     *            optional factory for non-reflective type adapters of the response classes
+     */
+    protected JsonApi(int connectionTimeout, int readTimeout, TypeAdapterFactory typeAdapterFactory) {
+        this(connectionTimeout, readTimeout, createGson(typeAdapterFactory), Transport.DEFAULT, null, null);
+    }
+
+    /**
+     * Constructor with resources that can be shared between many instances.
+     * 
+     * @param connectionTimeout
+     *            connection timeout in milliseconds
+     * @param readTimeout
+     *            timeout for each read in milliseconds
+     * @param gson
+     *            created with {@link #createGson(TypeAdapterFactory)}
+     * @param transport
+     *            opens the connections
+     * @param metrics
+     *            optional counters to update for each request
+     * @param rateLimiter
+     *            optional limit of the request rate
+     */
+    protected JsonApi(int connectionTimeout, int readTimeout, Gson gson, Transport transport,
+            RequestMetrics metrics, RateLimiter rateLimiter) {
+        if (transport == null) {
+            throw new IllegalArgumentException("Missing transport");
+        }
         CONNECTION_TIMEOUT = connectionTimeout;
         READ_TIMEOUT = readTimeout;
+        GSON = gson;
+        this.transport = transport;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Create a Gson instance suitable for the responses. It's thread-safe and can be shared by all instances.
+     * 
+     * @param typeAdapterFactory
+     *            optional factory for non-reflective type adapters of the response classes
+     */
+    protected static Gson createGson(TypeAdapterFactory typeAdapterFactory) {
+        return createGson(typeAdapterFactory, DEFAULT_DATE_FORMAT);
+    }
+
+    /**
+     * Create a Gson instance suitable for the responses, with a custom format of the dates in the responses.
+     * 
+     * @param typeAdapterFactory
+     *            optional factory for non-reflective type adapters of the response classes
+     * @param dateFormat
+     *            pattern for {@link java.text.SimpleDateFormat}
+     */
+    protected static Gson createGson(TypeAdapterFactory typeAdapterFactory, String dateFormat) {
+        GsonBuilder builder = new GsonBuilder().setDateFormat(dateFormat);
+        if (typeAdapterFactory != null) {
+            builder.registerTypeAdapterFactory(typeAdapterFactory);
+        }
+        return builder.create();
     }
 
     /**
@@ -47,16 +151,7 @@ public class JsonApi {
      * @throws IOException
      */
     protected <T> T callMethod(String url, Class<T> responseClass) throws IOException {
-
-        HttpURLConnection con = createConnectionForGet(url);
-
-        try (Reader reader = new InputStreamReader(con.getInputStream())) {
-            JsonObject response = (JsonObject) PARSER.parse(reader);
-            checkErrorResponse(con, response);
-            return GSON.fromJson(response, responseClass);
-        } finally {
-            closeInputStream(con);
-        }
+        return call(null, 0, url, null, responseClass, null);
     }
 
     /**
@@ -72,22 +167,251 @@ public class JsonApi {
      * @throws IOException
      */
     protected <T> T callMethod(String url, String parameters, Class<T> responseClass) throws IOException {
+        return callMethod(null, 0, url, parameters, responseClass);
+    }
+
+    /**
+     * Calls an API method and returns the json result as a pojo. The endpoint selects the timeouts and is traced
+     * together with the pairing.
+     * 
+     * @param endpoint
+     *            the method called
+     * @param pairingId
+     *            the pairing of the request or zero
+     * @param url
+     *            the full URL of the method
+     * @param responseClass
+     *            the Java class corresponding to the JSON response
+     * @return the json result as a pojo
+     * @throws IOException
+     */
+    protected <T> T callMethod(Endpoint endpoint, int pairingId, String url, Class<T> responseClass)
+            throws IOException {
+        return call(endpoint, pairingId, url, null, responseClass, null);
+    }
+
+    /**
+     * Calls an API method using POST and returns the json result as a pojo. The endpoint selects the timeouts and is
+     * traced together with the pairing.
+     * 
+     * @param endpoint
+     *            the method called
+     * @param pairingId
+     *            the pairing of the request or zero
+     * @param url
+     *            the full URL of the method
+     * @param parameters
+     *            the parameters to be posted
+     * @param responseClass
+     *            the Java class corresponding to the JSON response
+     * @return the json result as a pojo
+     * @throws IOException
+     */
+    protected <T> T callMethod(Endpoint endpoint, int pairingId, String url, String parameters,
+            Class<T> responseClass) throws IOException {
+        return callMethod(endpoint, pairingId, url, parameters, responseClass, null);
+    }
+
+    /**
+     * Same as {@link #callMethod(Endpoint, int, String, String, Class)}, but sets a flag just before the parameters
+     * are written. If the call fails while the flag is still clear, the request never reached the server.
+     */
+    <T> T callMethod(Endpoint endpoint, int pairingId, String url, String parameters, Class<T> responseClass,
+            AtomicBoolean sending) throws IOException {
+        if (parameters == null) {
+            throw new IllegalArgumentException("Missing parameters");
+        }
+        return call(endpoint, pairingId, url, parameters, responseClass, sending);
+    }
+
+    Gson getGson() {
+        return GSON;
+    }
+
+    Transport getTransport() {
+        return transport;
+    }
 
-        HttpURLConnection con = createConnectionForPost(url);
+    RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @return the counters updated by this instance or null
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set a tracer to receive events during each request, or null to stop tracing.
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public Tracer getTracer() {
+        return tracer;
+    }
 
-        try (OutputStreamWriter writer = new OutputStreamWriter(con.getOutputStream(), StandardCharsets.UTF_8)) {
-            writer.write(parameters);
+    /**
+     * Set how responses are decoded. {@link DecoderMode#STREAMING} is faster but relies on
+     * {@link #checkErrorResponse(HttpURLConnection, JsonObject)} only looking at the "error" and "success" fields.
+     */
+    public void setDecoderMode(DecoderMode decoderMode) {
+        if (decoderMode == null) {
+            throw new IllegalArgumentException("Missing decoder mode");
         }
+        this.decoderMode = decoderMode;
+    }
+
+    public DecoderMode getDecoderMode() {
+        return decoderMode;
+    }
+
+    /**
+     * Override this to use different connection timeouts for different endpoints.
+     * 
+     * @param endpoint
+     *            the endpoint called, or null if not known
+     * @return the connection timeout in milliseconds
+     */
+    protected int getConnectionTimeout(Endpoint endpoint) {
+        return CONNECTION_TIMEOUT;
+    }
+
+    /**
+     * Override this to use different read timeouts for different endpoints.
+     * 
+     * @param endpoint
+     *            the endpoint called, or null if not known
+     * @return the timeout for each read in milliseconds
+     */
+    protected int getReadTimeout(Endpoint endpoint) {
+        return READ_TIMEOUT;
+    }
+
+    /**
+     * Override this to get the nonce of the posted parameters into the trace events. Only called when tracing.
+     * 
+     * @return the nonce or zero
+     */
+    protected long getNonce(String parameters) {
+        return 0;
+    }
+
+    private <T> T call(Endpoint endpoint, int pairingId, String url, String parameters, Class<T> responseClass,
+            AtomicBoolean sending) throws IOException {
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+        long start = System.nanoTime();
+        Tracer tracer = this.tracer;
+        TraceEvent event = null;
+        if (tracer != null) {
+            event = TRACE_EVENTS.get();
+            event.begin(endpoint, pairingId, parameters != null ? getNonce(parameters) : 0, start);
+            trace(tracer, event, TraceEvent.Type.REQUEST_BUILT);
+        }
+        boolean success = false;
+        try {
+            T result = parameters == null ? get(endpoint, url, responseClass, tracer, event) : post(endpoint, url,
+                    parameters, responseClass, tracer, event, sending);
+            success = true;
+            return result;
+        } catch (IOException | RuntimeException e) {
+            if (event != null) {
+                event.error = e;
+                trace(tracer, event, TraceEvent.Type.ERROR);
+            }
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.record(System.nanoTime() - start, success);
+            }
+        }
+    }
+
+    private <T> T get(Endpoint endpoint, String url, Class<T> responseClass, Tracer tracer, TraceEvent event)
+            throws IOException {
 
+        HttpURLConnection con = createConnectionForGet(endpoint, url);
+        trace(tracer, event, TraceEvent.Type.CONNECTION_ACQUIRED);
+
+        return readResponse(con, responseClass, tracer, event);
+    }
+
+    private <T> T post(Endpoint endpoint, String url, String parameters, Class<T> responseClass, Tracer tracer,
+            TraceEvent event, AtomicBoolean sending) throws IOException {
+
+        HttpURLConnection con = createConnectionForPost(endpoint, url);
+
+        byte[] body = parameters.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = con.getOutputStream()) {
+            trace(tracer, event, TraceEvent.Type.CONNECTION_ACQUIRED);
+            if (sending != null) {
+                sending.set(true);
+            }
+            out.write(body);
+        }
+        if (event != null) {
+            event.bytesWritten = body.length;
+            trace(tracer, event, TraceEvent.Type.BYTES_WRITTEN);
+        }
+
+        return readResponse(con, responseClass, tracer, event);
+    }
+
+    private <T> T readResponse(HttpURLConnection con, Class<T> responseClass, Tracer tracer, TraceEvent event)
+            throws IOException {
         try (Reader reader = new InputStreamReader(con.getInputStream())) {
-            JsonObject response = (JsonObject) PARSER.parse(reader);
-            checkErrorResponse(con, response);
-            return GSON.fromJson(response, responseClass);
+            trace(tracer, event, TraceEvent.Type.FIRST_BYTE);
+            T result;
+            if (decoderMode == DecoderMode.STREAMING) {
+                EnvelopeReader in = new EnvelopeReader(reader);
+                result = GSON.fromJson(in, responseClass);
+                JsonObject envelope = in.getEnvelope();
+                if (envelope != null || con.getResponseCode() >= 300) {
+                    checkErrorResponse(con, envelope != null ? envelope : new JsonObject());
+                }
+            } else {
+                result = decodeTree(con, PARSER.parse(reader), responseClass);
+            }
+            trace(tracer, event, TraceEvent.Type.PARSE_DONE);
+            return result;
         } finally {
             closeInputStream(con);
         }
     }
 
+    private <T> T decodeTree(HttpURLConnection con, JsonElement tree, Class<T> responseClass) throws IOException {
+        JsonObject response = (JsonObject) tree;
+        checkErrorResponse(con, response);
+        return GSON.fromJson(response, responseClass);
+    }
+
+    private static void trace(Tracer tracer, TraceEvent event, TraceEvent.Type type) {
+        if (event != null) {
+            event.type = type;
+            event.timestampNanos = System.nanoTime();
+            tracer.onEvent(event);
+        }
+    }
+
+    /**
+     * Decodes a local JSON response the same way as the call methods, with the current {@link DecoderMode} and the
+     * error check. Used for warming up the parser and type adapters with local data.
+     *
+     * @param json
+     *            the JSON response
+     * @param responseClass
+     *            the Java class corresponding to the JSON response
+     * @return the json result as a pojo
+     */
+    protected <T> T parse(byte[] json, Class<T> responseClass) throws IOException {
+        return readResponse(new LocalConnection(json), responseClass, null, null);
+    }
+
     /**
      * Override this method to set request properties etc.
      */
@@ -104,21 +428,21 @@ public class JsonApi {
         }
     }
 
-    private HttpURLConnection createConnectionForGet(String url) throws IOException {
-        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
-        con.setConnectTimeout(CONNECTION_TIMEOUT);
-        con.setReadTimeout(READ_TIMEOUT);
+    private HttpURLConnection createConnectionForGet(Endpoint endpoint, String url) throws IOException {
+        HttpURLConnection con = transport.open(new URL(url));
+        con.setConnectTimeout(getConnectionTimeout(endpoint));
+        con.setReadTimeout(getReadTimeout(endpoint));
         setConnectionProperties(con);
         con.connect();
         return con;
     }
 
-    private HttpURLConnection createConnectionForPost(String url) throws IOException {
-        HttpURLConnection con = (HttpURLConnection) new URL(url).openConnection();
+    private HttpURLConnection createConnectionForPost(Endpoint endpoint, String url) throws IOException {
+        HttpURLConnection con = transport.open(new URL(url));
         con.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
         con.setRequestProperty("charset", "utf-8");
-        con.setConnectTimeout(CONNECTION_TIMEOUT);
-        con.setReadTimeout(READ_TIMEOUT);
+        con.setConnectTimeout(getConnectionTimeout(endpoint));
+        con.setReadTimeout(getReadTimeout(endpoint));
         con.setUseCaches(false);
         setConnectionProperties(con);
         con.setDoOutput(true);
@@ -134,4 +458,40 @@ public class JsonApi {
             // Ignore
         }
     }
+    /**
+     * A successful response that is already in memory.
+     */
+    private static class LocalConnection extends HttpURLConnection {
+
+        private final byte[] body;
+
+        LocalConnection(byte[] body) throws MalformedURLException {
+            super(new URL("http://localhost/"));
+            this.body = body;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return HTTP_OK;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(body);
+        }
+    }
 }
\ No newline at end of file
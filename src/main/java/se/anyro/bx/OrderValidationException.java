@@ -0,0 +1,24 @@
+package se.anyro.bx;
+
+/**
+ * Order rejected by an {@link OrderValidator} before it was sent to BX.
+ */
+@SuppressWarnings("serial")
+public class OrderValidationException extends IllegalArgumentException {
+
+    public enum Reason {
+        UNKNOWN_PAIRING, INACTIVE_PAIRING, INVALID_AMOUNT, INVALID_RATE, AMOUNT_SCALE, RATE_SCALE, BELOW_MINIMUM,
+        INSUFFICIENT_FUNDS
+    }
+
+    private final Reason reason;
+
+    public OrderValidationException(Reason reason, String description) {
+        super(description);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
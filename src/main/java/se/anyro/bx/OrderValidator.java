@@ -0,0 +1,217 @@
+package se.anyro.bx;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import se.anyro.bx.OrderValidationException.Reason;
+import se.anyro.bx.types.Balance;
+import se.anyro.bx.types.OrderType;
+import se.anyro.bx.types.Pairing;
+
+/**
+ * Checks orders locally before they are sent, using cached pairings and the last balance snapshot. Set it with
+ * {@link BxApi#setOrderValidator(OrderValidator)} and it is kept up to date by
+ * {@link BxApi#getCurrencyPairings()} and {@link BxApi#getBalances(String)}.
+ * <p>
+ * The amount of an order is in primary currency for both types, as documented for {@link BxApi#createOrder}: spent when
+ * buying and received when selling. So a SELL order spends amount / rate of the secondary currency. Checks that need
+ * pairings or balances are skipped until they are known. Thread-safe.
+ */
+public class OrderValidator {
+
+    /**
+     * Number of decimals allowed for currencies without a scale of their own.
+     */
+    public static final int DEFAULT_SCALE = 8;
+
+    private final Map<String, Integer> scales = new HashMap<>();
+    private Map<Integer, Pairing> pairings;
+    private Map<String, BigDecimal> available;
+
+    public OrderValidator() {
+        scales.put("THB", 2);
+    }
+
+    /**
+     * Set the number of decimals allowed for amounts in a currency, and for rates of pairings with it as primary
+     * currency.
+     */
+    public synchronized void setScale(String currency, int scale) {
+        scales.put(currency, scale);
+    }
+
+    public synchronized int getScale(String currency) {
+        Integer scale = scales.get(currency);
+        return scale != null ? scale : DEFAULT_SCALE;
+    }
+
+    /**
+     * Replace the cached pairings, for instance with the result of {@link BxApi#getCurrencyPairings()}.
+     */
+    public synchronized void setPairings(Pairing[] pairings) {
+        Map<Integer, Pairing> map = new HashMap<>();
+        for (Pairing pairing : pairings) {
+            map.put(pairing.pairing_id, pairing);
+        }
+        this.pairings = map;
+    }
+
+    /**
+     * Replace the balance snapshot, for instance with the result of {@link BxApi#getBalances(String)}.
+     */
+    public synchronized void setBalances(Map<String, Balance> balances) {
+        Map<String, BigDecimal> map = new HashMap<>();
+        if (balances != null) {
+            for (Entry<String, Balance> entry : balances.entrySet()) {
+                Balance balance = entry.getValue();
+                BigDecimal funds = balance != null ? balance.available : null;
+                map.put(entry.getKey(), funds != null ? funds : BigDecimal.ZERO);
+            }
+        }
+        available = map;
+    }
+
+    /**
+     * @return the available funds of a currency, or null if no balances are known
+     */
+    public synchronized BigDecimal getAvailable(String currency) {
+        if (available == null) {
+            return null;
+        }
+        BigDecimal funds = available.get(currency);
+        return funds != null ? funds : BigDecimal.ZERO;
+    }
+
+    /**
+     * Check an order the same way it would be passed to {@link BxApi#createOrder}. The funds may be taken by another
+     * order before this one is sent, which {@link BxApi#createOrder} prevents by checking and reserving at once.
+     *
+     * @throws OrderValidationException
+     *             if the order would be rejected by BX
+     */
+    public synchronized void validate(int pairingId, OrderType type, BigDecimal amount, BigDecimal rate) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new OrderValidationException(Reason.INVALID_AMOUNT, "Amount must be positive: " + amount);
+        }
+        if (rate == null || rate.signum() <= 0) {
+            throw new OrderValidationException(Reason.INVALID_RATE, "Rate must be positive: " + rate);
+        }
+        if (pairings == null) {
+            return;
+        }
+        Pairing pairing = getPairing(pairingId);
+        if (!pairing.active) {
+            throw new OrderValidationException(Reason.INACTIVE_PAIRING, "Pairing " + pairingId + " is not active");
+        }
+        String primary = pairing.primary_currency;
+        int scale = getScale(primary);
+        if (decimals(amount) > scale) {
+            throw new OrderValidationException(Reason.AMOUNT_SCALE, "Max " + scale + " decimals allowed for "
+                    + primary + ": " + amount);
+        }
+        if (decimals(rate) > scale) {
+            throw new OrderValidationException(Reason.RATE_SCALE, "Max " + scale + " decimals allowed for "
+                    + primary + ": " + rate);
+        }
+
+        // Compare without dividing. The secondary value is amount / rate.
+        if (pairing.primary_min != null && amount.compareTo(pairing.primary_min) < 0) {
+            throw new OrderValidationException(Reason.BELOW_MINIMUM, "Minimum is " + pairing.primary_min + " "
+                    + primary);
+        }
+        if (pairing.secondary_min != null && amount.compareTo(pairing.secondary_min.multiply(rate)) < 0) {
+            throw new OrderValidationException(Reason.BELOW_MINIMUM, "Minimum is " + pairing.secondary_min + " "
+                    + pairing.secondary_currency);
+        }
+
+        String spent = spentCurrency(pairing, type);
+        BigDecimal funds = getAvailable(spent);
+        if (funds != null && amount.compareTo(type == OrderType.BUY ? funds : funds.multiply(rate)) > 0) {
+            throw new OrderValidationException(Reason.INSUFFICIENT_FUNDS, "Only " + funds + " " + spent
+                    + " available");
+        }
+    }
+
+    /**
+     * @param rate
+     *            Rate of the order, needed to convert the available secondary currency when selling
+     * @return the largest amount of an order the available funds allow, or null if no balances are known
+     */
+    public synchronized BigDecimal getMaxAmount(int pairingId, OrderType type, BigDecimal rate) {
+        Pairing pairing = getPairing(pairingId);
+        BigDecimal funds = getAvailable(spentCurrency(pairing, type));
+        if (funds == null) {
+            return null;
+        }
+        BigDecimal max = type == OrderType.BUY ? funds : funds.multiply(rate);
+        return max.setScale(getScale(pairing.primary_currency), RoundingMode.DOWN);
+    }
+
+    /**
+     * Round an amount down to the number of decimals allowed.
+     */
+    public synchronized BigDecimal roundAmount(int pairingId, BigDecimal amount) {
+        return amount.setScale(getScale(getPairing(pairingId).primary_currency), RoundingMode.DOWN);
+    }
+
+    /**
+     * Round a rate to the number of decimals allowed, down when buying and up when selling so the limit is never
+     * passed.
+     */
+    public synchronized BigDecimal roundRate(int pairingId, OrderType type, BigDecimal rate) {
+        RoundingMode mode = type == OrderType.BUY ? RoundingMode.DOWN : RoundingMode.UP;
+        return rate.setScale(getScale(getPairing(pairingId).primary_currency), mode);
+    }
+
+    /**
+     * Validate an order and withdraw what it spends from the available funds until the next balance snapshot, in one
+     * step so that concurrent orders can't both pass the check of the same funds.
+     *
+     * @throws OrderValidationException
+     *             if the order would be rejected by BX
+     */
+    synchronized void reserve(int pairingId, OrderType type, BigDecimal amount, BigDecimal rate) {
+        validate(pairingId, type, amount, rate);
+        adjustAvailable(pairingId, type, amount, rate, true);
+    }
+
+    /**
+     * Give back the funds of a reserved order that BX rejected or that was never sent.
+     */
+    synchronized void release(int pairingId, OrderType type, BigDecimal amount, BigDecimal rate) {
+        adjustAvailable(pairingId, type, amount, rate, false);
+    }
+
+    private void adjustAvailable(int pairingId, OrderType type, BigDecimal amount, BigDecimal rate,
+            boolean withdraw) {
+        if (available == null || pairings == null || !pairings.containsKey(pairingId)) {
+            return;
+        }
+        String spent = spentCurrency(pairings.get(pairingId), type);
+        BigDecimal value = type == OrderType.BUY ? amount : amount.divide(rate, getScale(spent), RoundingMode.UP);
+        BigDecimal funds = getAvailable(spent);
+        available.put(spent, withdraw ? funds.subtract(value) : funds.add(value));
+    }
+
+    private Pairing getPairing(int pairingId) {
+        Pairing pairing = pairings != null ? pairings.get(pairingId) : null;
+        if (pairing == null) {
+            throw new OrderValidationException(Reason.UNKNOWN_PAIRING, "Unknown pairing: " + pairingId);
+        }
+        return pairing;
+    }
+
+    private static String spentCurrency(Pairing pairing, OrderType type) {
+        return type == OrderType.BUY ? pairing.primary_currency : pairing.secondary_currency;
+    }
+
+    private static int decimals(BigDecimal value) {
+        if (value.scale() <= 0) {
+            return 0;
+        }
+        return Math.max(0, value.stripTrailingZeros().scale());
+    }
+}
@@ -0,0 +1,72 @@
+package se.anyro.bx;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the request rate. Callers wait in turn when the budget is used up.
+ */
+public class RateLimiter {
+
+    private final double nanosPerPermit;
+    private final double maxPermits;
+    private double permits;
+    private long lastNanos = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond
+     *            Sustained number of requests per second
+     * @param burst
+     *            Number of requests that can be made at once after being idle
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        maxPermits = burst;
+        permits = burst;
+    }
+
+    /**
+     * Wait until a request may be made.
+     */
+    public void acquire() throws InterruptedIOException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rate limit");
+            }
+        }
+    }
+
+    /**
+     * @return true if a request may be made right away, without waiting
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (permits >= 1) {
+            permits -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take a permit, possibly in advance, and return how long to wait for it.
+     */
+    private synchronized long reserve() {
+        refill();
+        permits -= 1;
+        return permits >= 0 ? 0 : (long) (-permits * nanosPerPermit);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        permits = Math.min(maxPermits, permits + (now - lastNanos) / nanosPerPermit);
+        lastNanos = now;
+    }
+}
@@ -0,0 +1,151 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lets concurrent identical requests share one call and its result. The first caller makes the call while the others
+ * wait for it. With a window larger than zero, the result is also reused by calls made within the window after it
+ * completed. Failures are shared with the waiting callers but never reused. Expired results are swept out on each
+ * call, so only the results of the last window are kept.
+ */
+class RequestCoalescer {
+
+    static final long DISABLED = -1;
+
+    interface Call<T> {
+        T call() throws IOException;
+    }
+
+    private final AtomicLongArray windowNanos = new AtomicLongArray(Endpoint.values().length);
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    RequestCoalescer() {
+        for (int i = 0; i < windowNanos.length(); ++i) {
+            windowNanos.set(i, DISABLED);
+        }
+    }
+
+    /**
+     * @param millis
+     *            0 to only share calls in flight, more to also reuse results for that long, or {@link #DISABLED}
+     */
+    void setWindow(Endpoint endpoint, long millis) {
+        windowNanos.set(endpoint.ordinal(), millis < 0 ? DISABLED : TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    boolean isEnabled(Endpoint endpoint) {
+        return windowNanos.get(endpoint.ordinal()) != DISABLED;
+    }
+
+    /**
+     * @param key
+     *            identifies the request, typically the full URL
+     */
+    @SuppressWarnings("unchecked")
+    <T> T call(Endpoint endpoint, String key, Call<T> call) throws IOException {
+        long window = windowNanos.get(endpoint.ordinal());
+        if (window == DISABLED) {
+            return call.call();
+        }
+        removeExpired();
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isUsable()) {
+                entries.remove(key, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                Entry created = new Entry(window);
+                entry = entries.putIfAbsent(key, created);
+                if (entry == null) {
+                    return (T) run(key, created, call, window);
+                }
+            }
+            if (entry.isUsable()) {
+                return (T) entry.await();
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void removeExpired() {
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            if (!mapEntry.getValue().isUsable()) {
+                entries.remove(mapEntry.getKey(), mapEntry.getValue());
+            }
+        }
+    }
+
+    private <T> Object run(String key, Entry entry, Call<T> call, long window) throws IOException {
+        try {
+            entry.complete(call.call(), null);
+        } catch (IOException | RuntimeException e) {
+            entry.complete(null, e);
+        } finally {
+            if (entry.isInFlight()) {
+                // An Error is on its way up. Don't leave the waiting callers hanging.
+                entry.complete(null, new IllegalStateException("Coalesced request failed"));
+            }
+            if (window == 0 || entry.error != null) {
+                entries.remove(key, entry);
+            }
+        }
+        return entry.await();
+    }
+
+    private static class Entry {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final long window;
+        private volatile long completedNanos;
+        private Object result;
+        private Exception error;
+
+        Entry(long window) {
+            this.window = window;
+        }
+
+        void complete(Object result, Exception error) {
+            this.result = result;
+            this.error = error;
+            completedNanos = System.nanoTime();
+            done.countDown();
+        }
+
+        boolean isInFlight() {
+            return done.getCount() > 0;
+        }
+
+        boolean isUsable() {
+            if (isInFlight()) {
+                return true;
+            }
+            return error == null && System.nanoTime() - completedNanos <= window;
+        }
+
+        Object await() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for coalesced request");
+            }
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            if (error != null) {
+                throw (RuntimeException) error;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package se.anyro.bx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe counters of the requests made by one or more {@link JsonApi} instances.
+ */
+public class RequestMetrics {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Count one finished request.
+     *
+     * @param nanos
+     *            time from start until the response was parsed or the request failed
+     * @param success
+     *            false if an exception was thrown
+     */
+    public void record(long nanos, boolean success) {
+        requests.incrementAndGet();
+        if (!success) {
+            errors.incrementAndGet();
+        }
+        totalNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // Retry
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getAverageNanos() {
+        long count = requests.get();
+        return count > 0 ? totalNanos.get() / count : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestMetrics [requests=" + getRequests() + ", errors=" + getErrors() + ", averageNanos="
+                + getAverageNanos() + ", maxNanos=" + getMaxNanos() + "]";
+    }
+}
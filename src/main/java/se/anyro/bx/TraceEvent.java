@@ -0,0 +1,48 @@
+package se.anyro.bx;
+
+/**
+ * Reusable event sent to a {@link Tracer}. All times are from {@link System#nanoTime()}.
+ */
+public class TraceEvent {
+
+    public enum Type {
+        REQUEST_BUILT, // Parameters ready, about to connect
+        CONNECTION_ACQUIRED, // Connected or reusing a kept-alive connection
+        BYTES_WRITTEN, // Posted parameters sent. Not sent for GET requests.
+        FIRST_BYTE, // Response headers received
+        PARSE_DONE, // Response parsed into objects. Last event of a successful request.
+        ERROR // Request failed. Last event of a failed request.
+    }
+
+    public Type type;
+    public Endpoint endpoint; // Null if not called through BxApi
+    public int pairingId; // Zero if not applicable
+    public long nonce; // Zero for the public API
+    public long startNanos; // When the request started
+    public long timestampNanos; // When this event happened
+    public long bytesWritten; // Size of the posted parameters, set from BYTES_WRITTEN and on
+    public Throwable error; // Only set for ERROR
+
+    /**
+     * @return time since the request started
+     */
+    public long getElapsedNanos() {
+        return timestampNanos - startNanos;
+    }
+
+    void begin(Endpoint endpoint, int pairingId, long nonce, long startNanos) {
+        this.endpoint = endpoint;
+        this.pairingId = pairingId;
+        this.nonce = nonce;
+        this.startNanos = startNanos;
+        bytesWritten = 0;
+        error = null;
+    }
+
+    @Override
+    public String toString() {
+        return "TraceEvent [type=" + type + ", endpoint=" + endpoint + ", pairingId=" + pairingId + ", nonce="
+                + nonce + ", elapsedNanos=" + getElapsedNanos() + ", bytesWritten=" + bytesWritten + ", error="
+                + error + "]";
+    }
+}
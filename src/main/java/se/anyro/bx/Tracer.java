@@ -0,0 +1,12 @@
+package se.anyro.bx;
+
+/**
+ * Receives events during the lifecycle of each request. Set it with {@link JsonApi#setTracer(Tracer)}.
+ * <p>
+ * The event object is reused for all events of the calling thread, so copy what you need before returning. Events are
+ * delivered on the calling thread, so keep the work short and don't make API calls from here.
+ */
+public interface Tracer {
+
+    void onEvent(TraceEvent event);
+}
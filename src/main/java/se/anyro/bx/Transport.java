@@ -0,0 +1,26 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Opens the connections used by {@link JsonApi}. Replace it to record, replay or otherwise intercept the traffic.
+ */
+public interface Transport {
+
+    /**
+     * Opens connections with {@link URL#openConnection()}.
+     */
+    Transport DEFAULT = new Transport() {
+        @Override
+        public HttpURLConnection open(URL url) throws IOException {
+            return (HttpURLConnection) url.openConnection();
+        }
+    };
+
+    /**
+     * @return a new, not yet connected, connection to the URL
+     */
+    HttpURLConnection open(URL url) throws IOException;
+}
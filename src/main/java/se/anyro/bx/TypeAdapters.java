@@ -0,0 +1,1043 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import se.anyro.bx.types.Balance;
+import se.anyro.bx.types.BillPaymentGroup;
+import se.anyro.bx.types.BillPaymentServiceProvider;
+import se.anyro.bx.types.Order;
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.Pairing;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.Ticker;
+import se.anyro.bx.types.Ticker.TickerOrderBook;
+import se.anyro.bx.types.Ticker.TickerOrders;
+import se.anyro.bx.types.TradeData;
+import se.anyro.bx.types.Transaction;
+import se.anyro.bx.types.Withdrawal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Hand-written type adapters for all the types in se.anyro.bx.types and the response wrappers in BxApi. They avoid
+ * Gson's reflective adapter, which is slow to set up and costly per field. Field names are matched with a string
+ * switch, which the compiler turns into a switch on the hash code.
+ * <p>
+ * Only reading is implemented by hand. Writing is never done by the API itself so it falls back to the reflective
+ * adapter, created on first use.
+ */
+class TypeAdapters implements TypeAdapterFactory {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+        Class<? super T> type = typeToken.getRawType();
+        TypeAdapter<?> adapter = null;
+        if (type == Ticker.class) {
+            adapter = new TickerAdapter(gson, this);
+        } else if (type == TickerOrderBook.class) {
+            adapter = new TickerOrderBookAdapter(gson, this);
+        } else if (type == TickerOrders.class) {
+            adapter = new TickerOrdersAdapter(gson, this);
+        } else if (type == Pairing.class) {
+            adapter = new PairingAdapter(gson, this);
+        } else if (type == OrderBook.class) {
+            adapter = new OrderBookAdapter(gson, this);
+        } else if (type == RecentTrades.class) {
+            adapter = new RecentTradesAdapter(gson, this);
+        } else if (type == RecentTrades.Trade.class) {
+            adapter = new TradeAdapter(gson, this);
+        } else if (type == RecentTrades.Order.class) {
+            adapter = new RecentOrderAdapter(gson, this);
+        } else if (type == TradeData.class) {
+            adapter = new TradeDataAdapter(gson, this);
+        } else if (type == Order.class) {
+            adapter = new OrderAdapter(gson, this);
+        } else if (type == Balance.class) {
+            adapter = new BalanceAdapter(gson, this);
+        } else if (type == Transaction.class) {
+            adapter = new TransactionAdapter(gson, this);
+        } else if (type == Withdrawal.class) {
+            adapter = new WithdrawalAdapter(gson, this);
+        } else if (type == BillPaymentGroup.class) {
+            adapter = new BillPaymentGroupAdapter(gson, this);
+        } else if (type == BillPaymentServiceProvider.class) {
+            adapter = new BillPaymentServiceProviderAdapter(gson, this);
+        } else if (type == BxApi.MarketData.class) {
+            adapter = new MarketDataAdapter(gson, this);
+        } else if (type == BxApi.Pairings.class) {
+            adapter = new PairingsAdapter(gson, this);
+        } else if (type == BxApi.Balances.class) {
+            adapter = new BalancesAdapter(gson, this);
+        } else if (type == BxApi.HistoricalTradeData.class) {
+            adapter = new HistoricalTradeDataAdapter(gson, this);
+        } else if (type == BxApi.Orders.class) {
+            adapter = new OrdersAdapter(gson, this);
+        } else if (type == BxApi.TransactionHistory.class) {
+            adapter = new TransactionHistoryAdapter(gson, this);
+        } else if (type == BxApi.DepositAddress.class) {
+            adapter = new DepositAddressAdapter(gson, this);
+        } else if (type == BxApi.WithdrawalId.class) {
+            adapter = new WithdrawalIdAdapter(gson, this);
+        } else if (type == BxApi.WithdrawalHistory.class) {
+            adapter = new WithdrawalHistoryAdapter(gson, this);
+        } else if (type == BxApi.BillPaymentGroups.class) {
+            adapter = new BillPaymentGroupsAdapter(gson, this);
+        } else if (type == BxApi.BillPaymentServiceProviders.class) {
+            adapter = new BillPaymentServiceProvidersAdapter(gson, this);
+        }
+        return (TypeAdapter<T>) adapter;
+    }
+
+    /**
+     * Base class for reading a JSON object field by field. Unknown fields and null values are skipped, leaving the
+     * default value of the field, just like the reflective adapter does for primitives.
+     */
+    private static abstract class ObjectAdapter<T> extends TypeAdapter<T> {
+
+        private final Gson gson;
+        private final TypeAdapterFactory factory;
+        private final Class<T> type;
+        private TypeAdapter<T> writeDelegate;
+
+        ObjectAdapter(Gson gson, TypeAdapterFactory factory, Class<T> type) {
+            this.gson = gson;
+            this.factory = factory;
+            this.type = type;
+        }
+
+        /**
+         * @return a new empty instance
+         */
+        abstract T newInstance();
+
+        /**
+         * Read the value of one field. The next token is the value.
+         *
+         * @return false if the field is unknown and should be skipped
+         */
+        abstract boolean readField(T object, String name, JsonReader in) throws IOException;
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            T object = newInstance();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if (!readField(object, name, in)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return object;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            TypeAdapter<T> delegate = writeDelegate;
+            if (delegate == null) {
+                delegate = gson.getDelegateAdapter(factory, TypeToken.get(type));
+                writeDelegate = delegate;
+            }
+            delegate.write(out, value);
+        }
+
+        <V> TypeAdapter<V> adapter(Class<V> valueType) {
+            return gson.getAdapter(valueType);
+        }
+    }
+
+    static int readInt(JsonReader in) throws IOException {
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    static BigDecimal readBigDecimal(JsonReader in) throws IOException {
+        try {
+            return new BigDecimal(in.nextString());
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    static boolean readBoolean(JsonReader in) throws IOException {
+        switch (in.peek()) {
+        case NUMBER:
+            return readInt(in) != 0;
+        case STRING:
+            String value = in.nextString();
+            return value.equals("1") || value.equalsIgnoreCase("true");
+        default:
+            return in.nextBoolean();
+        }
+    }
+
+    static BigDecimal[] readBigDecimals(JsonReader in) throws IOException {
+        List<BigDecimal> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                list.add(null);
+            } else {
+                list.add(readBigDecimal(in));
+            }
+        }
+        in.endArray();
+        return list.toArray(new BigDecimal[list.size()]);
+    }
+
+    static <E> E[] readArray(JsonReader in, TypeAdapter<E> adapter, E[] empty) throws IOException {
+        List<E> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(adapter.read(in));
+        }
+        in.endArray();
+        return list.toArray(empty);
+    }
+
+    /*
+     * Types
+     */
+
+    private static class TickerAdapter extends ObjectAdapter<Ticker> {
+        private final TypeAdapter<TickerOrderBook> orderBookAdapter;
+
+        TickerAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, Ticker.class);
+            orderBookAdapter = adapter(TickerOrderBook.class);
+        }
+
+        @Override
+        Ticker newInstance() {
+            return new Ticker();
+        }
+
+        @Override
+        boolean readField(Ticker ticker, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "pairing_id":
+                ticker.pairing_id = readInt(in);
+                return true;
+            case "primary_currency":
+                ticker.primary_currency = readString(in);
+                return true;
+            case "secondary_currency":
+                ticker.secondary_currency = readString(in);
+                return true;
+            case "change":
+                ticker.change = readBigDecimal(in);
+                return true;
+            case "last_price":
+                ticker.last_price = readBigDecimal(in);
+                return true;
+            case "volume_24hours":
+                ticker.volume_24hours = readBigDecimal(in);
+                return true;
+            case "orderbook":
+                ticker.orderbook = orderBookAdapter.read(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class TickerOrderBookAdapter extends ObjectAdapter<TickerOrderBook> {
+        private final TypeAdapter<TickerOrders> ordersAdapter;
+
+        TickerOrderBookAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, TickerOrderBook.class);
+            ordersAdapter = adapter(TickerOrders.class);
+        }
+
+        @Override
+        TickerOrderBook newInstance() {
+            return new TickerOrderBook();
+        }
+
+        @Override
+        boolean readField(TickerOrderBook orderBook, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "bids":
+                orderBook.bids = ordersAdapter.read(in);
+                return true;
+            case "asks":
+                orderBook.asks = ordersAdapter.read(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class TickerOrdersAdapter extends ObjectAdapter<TickerOrders> {
+
+        TickerOrdersAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, TickerOrders.class);
+        }
+
+        @Override
+        TickerOrders newInstance() {
+            return new TickerOrders();
+        }
+
+        @Override
+        boolean readField(TickerOrders orders, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "total":
+                orders.total = readInt(in);
+                return true;
+            case "volume":
+                orders.volume = readBigDecimal(in);
+                return true;
+            case "highbid":
+                orders.highbid = readBigDecimal(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class PairingAdapter extends ObjectAdapter<Pairing> {
+
+        PairingAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, Pairing.class);
+        }
+
+        @Override
+        Pairing newInstance() {
+            return new Pairing();
+        }
+
+        @Override
+        boolean readField(Pairing pairing, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "pairing_id":
+                pairing.pairing_id = readInt(in);
+                return true;
+            case "primary_currency":
+                pairing.primary_currency = readString(in);
+                return true;
+            case "secondary_currency":
+                pairing.secondary_currency = readString(in);
+                return true;
+            case "primary_min":
+                pairing.primary_min = readBigDecimal(in);
+                return true;
+            case "secondary_min":
+                pairing.secondary_min = readBigDecimal(in);
+                return true;
+            case "active":
+                pairing.active = readBoolean(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class OrderBookAdapter extends ObjectAdapter<OrderBook> {
+
+        OrderBookAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, OrderBook.class);
+        }
+
+        @Override
+        OrderBook newInstance() {
+            return new OrderBook();
+        }
+
+        @Override
+        boolean readField(OrderBook orderBook, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "bids":
+                orderBook.bids = readRows(in);
+                return true;
+            case "asks":
+                orderBook.asks = readRows(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        private static BigDecimal[][] readRows(JsonReader in) throws IOException {
+            List<BigDecimal[]> rows = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    rows.add(null);
+                } else {
+                    rows.add(readBigDecimals(in));
+                }
+            }
+            in.endArray();
+            return rows.toArray(new BigDecimal[rows.size()][]);
+        }
+    }
+
+    private static class RecentTradesAdapter extends ObjectAdapter<RecentTrades> {
+        private final TypeAdapter<RecentTrades.Trade> tradeAdapter;
+        private final TypeAdapter<RecentTrades.Order> orderAdapter;
+
+        RecentTradesAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, RecentTrades.class);
+            tradeAdapter = adapter(RecentTrades.Trade.class);
+            orderAdapter = adapter(RecentTrades.Order.class);
+        }
+
+        @Override
+        RecentTrades newInstance() {
+            return new RecentTrades();
+        }
+
+        @Override
+        boolean readField(RecentTrades recentTrades, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "trades":
+                recentTrades.trades = readArray(in, tradeAdapter, new RecentTrades.Trade[0]);
+                return true;
+            case "lowask":
+                recentTrades.lowask = readArray(in, orderAdapter, new RecentTrades.Order[0]);
+                return true;
+            case "highbid":
+                recentTrades.highbid = readArray(in, orderAdapter, new RecentTrades.Order[0]);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class TradeAdapter extends ObjectAdapter<RecentTrades.Trade> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        TradeAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, RecentTrades.Trade.class);
+            dateAdapter = adapter(Date.class);
+        }
+
+        @Override
+        RecentTrades.Trade newInstance() {
+            return new RecentTrades.Trade();
+        }
+
+        @Override
+        boolean readField(RecentTrades.Trade trade, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "trade_id":
+                trade.trade_id = readInt(in);
+                return true;
+            case "rate":
+                trade.rate = readBigDecimal(in);
+                return true;
+            case "amount":
+                trade.amount = readBigDecimal(in);
+                return true;
+            case "trade_date":
+                trade.trade_date = dateAdapter.read(in);
+                return true;
+            case "order_id":
+                trade.order_id = readInt(in);
+                return true;
+            case "trade_type":
+                trade.trade_type = readString(in);
+                return true;
+            case "seconds":
+                trade.seconds = readInt(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class RecentOrderAdapter extends ObjectAdapter<RecentTrades.Order> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        RecentOrderAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, RecentTrades.Order.class);
+            dateAdapter = adapter(Date.class);
+        }
+
+        @Override
+        RecentTrades.Order newInstance() {
+            return new RecentTrades.Order();
+        }
+
+        @Override
+        boolean readField(RecentTrades.Order order, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "order_id":
+                order.order_id = readInt(in);
+                return true;
+            case "rate":
+                order.rate = readBigDecimal(in);
+                return true;
+            case "amount":
+                order.amount = readBigDecimal(in);
+                return true;
+            case "date_added":
+                order.date_added = dateAdapter.read(in);
+                return true;
+            case "order_type":
+                order.order_type = readString(in);
+                return true;
+            case "display_vol1":
+                order.display_vol1 = readString(in);
+                return true;
+            case "display_vol2":
+                order.display_vol2 = readString(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class TradeDataAdapter extends ObjectAdapter<TradeData> {
+
+        TradeDataAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, TradeData.class);
+        }
+
+        @Override
+        TradeData newInstance() {
+            return new TradeData();
+        }
+
+        @Override
+        boolean readField(TradeData data, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "avg":
+                data.avg = readBigDecimal(in);
+                return true;
+            case "high":
+                data.high = readBigDecimal(in);
+                return true;
+            case "low":
+                data.low = readBigDecimal(in);
+                return true;
+            case "volume":
+                data.volume = readBigDecimal(in);
+                return true;
+            case "open":
+                data.open = readBigDecimal(in);
+                return true;
+            case "close":
+                data.close = readBigDecimal(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class OrderAdapter extends ObjectAdapter<Order> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        OrderAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, Order.class);
+            dateAdapter = adapter(Date.class);
+        }
+
+        @Override
+        Order newInstance() {
+            return new Order();
+        }
+
+        @Override
+        boolean readField(Order order, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "pairing_id":
+                order.pairing_id = readInt(in);
+                return true;
+            case "order_id":
+                order.order_id = readInt(in);
+                return true;
+            case "order_type":
+                order.order_type = readString(in);
+                return true;
+            case "amount":
+                order.amount = readBigDecimal(in);
+                return true;
+            case "rate":
+                order.rate = readBigDecimal(in);
+                return true;
+            case "date":
+                order.date = dateAdapter.read(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class BalanceAdapter extends ObjectAdapter<Balance> {
+
+        BalanceAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, Balance.class);
+        }
+
+        @Override
+        Balance newInstance() {
+            return new Balance();
+        }
+
+        @Override
+        boolean readField(Balance balance, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "total":
+                balance.total = readBigDecimal(in);
+                return true;
+            case "available":
+                balance.available = readBigDecimal(in);
+                return true;
+            case "orders":
+                balance.orders = readBigDecimal(in);
+                return true;
+            case "withdrawals":
+                balance.withdrawals = readBigDecimal(in);
+                return true;
+            case "deposits":
+                balance.deposits = readBigDecimal(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class TransactionAdapter extends ObjectAdapter<Transaction> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        TransactionAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, Transaction.class);
+            dateAdapter = adapter(Date.class);
+        }
+
+        @Override
+        Transaction newInstance() {
+            return new Transaction();
+        }
+
+        @Override
+        boolean readField(Transaction transaction, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "transaction_id":
+                transaction.transaction_id = readInt(in);
+                return true;
+            case "currency":
+                transaction.currency = readString(in);
+                return true;
+            case "amount":
+                transaction.amount = readBigDecimal(in);
+                return true;
+            case "date":
+                transaction.date = dateAdapter.read(in);
+                return true;
+            case "type":
+                transaction.type = readString(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class WithdrawalAdapter extends ObjectAdapter<Withdrawal> {
+        private final TypeAdapter<Date> dateAdapter;
+
+        WithdrawalAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, Withdrawal.class);
+            dateAdapter = adapter(Date.class);
+        }
+
+        @Override
+        Withdrawal newInstance() {
+            return new Withdrawal();
+        }
+
+        @Override
+        boolean readField(Withdrawal withdrawal, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "withdrawal_id":
+                withdrawal.withdrawal_id = readInt(in);
+                return true;
+            case "date_requested":
+                withdrawal.date_requested = dateAdapter.read(in);
+                return true;
+            case "amount":
+                withdrawal.amount = readBigDecimal(in);
+                return true;
+            case "currency":
+                withdrawal.currency = readString(in);
+                return true;
+            case "address":
+                withdrawal.address = readString(in);
+                return true;
+            case "withdrawal_status":
+                withdrawal.withdrawal_status = readString(in);
+                return true;
+            case "transaction_id":
+                withdrawal.transaction_id = readString(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class BillPaymentGroupAdapter extends ObjectAdapter<BillPaymentGroup> {
+
+        BillPaymentGroupAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BillPaymentGroup.class);
+        }
+
+        @Override
+        BillPaymentGroup newInstance() {
+            return new BillPaymentGroup();
+        }
+
+        @Override
+        boolean readField(BillPaymentGroup group, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "id":
+                group.id = readInt(in);
+                return true;
+            case "name":
+                group.name = readString(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    private static class BillPaymentServiceProviderAdapter extends ObjectAdapter<BillPaymentServiceProvider> {
+
+        BillPaymentServiceProviderAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BillPaymentServiceProvider.class);
+        }
+
+        @Override
+        BillPaymentServiceProvider newInstance() {
+            return new BillPaymentServiceProvider();
+        }
+
+        @Override
+        boolean readField(BillPaymentServiceProvider provider, String name, JsonReader in) throws IOException {
+            switch (name) {
+            case "id":
+                provider.id = readInt(in);
+                return true;
+            case "name":
+                provider.name = readString(in);
+                return true;
+            case "fee":
+                provider.fee = readString(in);
+                return true;
+            case "amount":
+                provider.amount = readBigDecimals(in);
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    /*
+     * Response wrappers in BxApi
+     */
+
+    private static class MarketDataAdapter extends ObjectAdapter<BxApi.MarketData> {
+        private final TypeAdapter<Ticker> tickerAdapter;
+
+        MarketDataAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.MarketData.class);
+            tickerAdapter = adapter(Ticker.class);
+        }
+
+        @Override
+        BxApi.MarketData newInstance() {
+            return new BxApi.MarketData();
+        }
+
+        @Override
+        boolean readField(BxApi.MarketData marketData, String name, JsonReader in) throws IOException {
+            marketData.put(parseKey(name), tickerAdapter.read(in));
+            return true;
+        }
+    }
+
+    private static class PairingsAdapter extends ObjectAdapter<BxApi.Pairings> {
+        private final TypeAdapter<Pairing> pairingAdapter;
+
+        PairingsAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.Pairings.class);
+            pairingAdapter = adapter(Pairing.class);
+        }
+
+        @Override
+        BxApi.Pairings newInstance() {
+            return new BxApi.Pairings();
+        }
+
+        @Override
+        boolean readField(BxApi.Pairings pairings, String name, JsonReader in) throws IOException {
+            pairings.put(parseKey(name), pairingAdapter.read(in));
+            return true;
+        }
+    }
+
+    static Integer parseKey(String name) {
+        try {
+            return Integer.valueOf(name);
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static class BalancesAdapter extends ObjectAdapter<BxApi.Balances> {
+        private final TypeAdapter<Balance> balanceAdapter;
+
+        BalancesAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.Balances.class);
+            balanceAdapter = adapter(Balance.class);
+        }
+
+        @Override
+        BxApi.Balances newInstance() {
+            return new BxApi.Balances();
+        }
+
+        @Override
+        boolean readField(BxApi.Balances balances, String name, JsonReader in) throws IOException {
+            if (!name.equals("balance")) {
+                return false;
+            }
+            HashMap<String, Balance> map = new HashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String currency = in.nextName();
+                map.put(currency, balanceAdapter.read(in));
+            }
+            in.endObject();
+            balances.balance = map;
+            return true;
+        }
+    }
+
+    private static class HistoricalTradeDataAdapter extends ObjectAdapter<BxApi.HistoricalTradeData> {
+        private final TypeAdapter<TradeData> dataAdapter;
+
+        HistoricalTradeDataAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.HistoricalTradeData.class);
+            dataAdapter = adapter(TradeData.class);
+        }
+
+        @Override
+        BxApi.HistoricalTradeData newInstance() {
+            return new BxApi.HistoricalTradeData();
+        }
+
+        @Override
+        boolean readField(BxApi.HistoricalTradeData response, String name, JsonReader in) throws IOException {
+            if (!name.equals("data")) {
+                return false;
+            }
+            response.data = dataAdapter.read(in);
+            return true;
+        }
+    }
+
+    private static class OrdersAdapter extends ObjectAdapter<BxApi.Orders> {
+        private final TypeAdapter<Order> orderAdapter;
+
+        OrdersAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.Orders.class);
+            orderAdapter = adapter(Order.class);
+        }
+
+        @Override
+        BxApi.Orders newInstance() {
+            return new BxApi.Orders();
+        }
+
+        @Override
+        boolean readField(BxApi.Orders response, String name, JsonReader in) throws IOException {
+            if (!name.equals("orders")) {
+                return false;
+            }
+            response.orders = readArray(in, orderAdapter, new Order[0]);
+            return true;
+        }
+    }
+
+    private static class TransactionHistoryAdapter extends ObjectAdapter<BxApi.TransactionHistory> {
+        private final TypeAdapter<Transaction> transactionAdapter;
+
+        TransactionHistoryAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.TransactionHistory.class);
+            transactionAdapter = adapter(Transaction.class);
+        }
+
+        @Override
+        BxApi.TransactionHistory newInstance() {
+            return new BxApi.TransactionHistory();
+        }
+
+        @Override
+        boolean readField(BxApi.TransactionHistory response, String name, JsonReader in) throws IOException {
+            if (!name.equals("transactions")) {
+                return false;
+            }
+            response.transactions = readArray(in, transactionAdapter, new Transaction[0]);
+            return true;
+        }
+    }
+
+    private static class DepositAddressAdapter extends ObjectAdapter<BxApi.DepositAddress> {
+
+        DepositAddressAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.DepositAddress.class);
+        }
+
+        @Override
+        BxApi.DepositAddress newInstance() {
+            return new BxApi.DepositAddress();
+        }
+
+        @Override
+        boolean readField(BxApi.DepositAddress response, String name, JsonReader in) throws IOException {
+            if (!name.equals("address")) {
+                return false;
+            }
+            response.address = readString(in);
+            return true;
+        }
+    }
+
+    private static class WithdrawalIdAdapter extends ObjectAdapter<BxApi.WithdrawalId> {
+
+        WithdrawalIdAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.WithdrawalId.class);
+        }
+
+        @Override
+        BxApi.WithdrawalId newInstance() {
+            return new BxApi.WithdrawalId();
+        }
+
+        @Override
+        boolean readField(BxApi.WithdrawalId response, String name, JsonReader in) throws IOException {
+            if (!name.equals("withdrawal_id")) {
+                return false;
+            }
+            response.withdrawal_id = readInt(in);
+            return true;
+        }
+    }
+
+    private static class WithdrawalHistoryAdapter extends ObjectAdapter<BxApi.WithdrawalHistory> {
+        private final TypeAdapter<Withdrawal> withdrawalAdapter;
+
+        WithdrawalHistoryAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.WithdrawalHistory.class);
+            withdrawalAdapter = adapter(Withdrawal.class);
+        }
+
+        @Override
+        BxApi.WithdrawalHistory newInstance() {
+            return new BxApi.WithdrawalHistory();
+        }
+
+        @Override
+        boolean readField(BxApi.WithdrawalHistory response, String name, JsonReader in) throws IOException {
+            if (!name.equals("withdrawals")) {
+                return false;
+            }
+            response.withdrawals = readArray(in, withdrawalAdapter, new Withdrawal[0]);
+            return true;
+        }
+    }
+
+    private static class BillPaymentGroupsAdapter extends ObjectAdapter<BxApi.BillPaymentGroups> {
+        private final TypeAdapter<BillPaymentGroup> groupAdapter;
+
+        BillPaymentGroupsAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.BillPaymentGroups.class);
+            groupAdapter = adapter(BillPaymentGroup.class);
+        }
+
+        @Override
+        BxApi.BillPaymentGroups newInstance() {
+            return new BxApi.BillPaymentGroups();
+        }
+
+        @Override
+        boolean readField(BxApi.BillPaymentGroups response, String name, JsonReader in) throws IOException {
+            if (!name.equals("groups")) {
+                return false;
+            }
+            response.groups = readArray(in, groupAdapter, new BillPaymentGroup[0]);
+            return true;
+        }
+    }
+
+    private static class BillPaymentServiceProvidersAdapter extends ObjectAdapter<BxApi.BillPaymentServiceProviders> {
+        private final TypeAdapter<BillPaymentServiceProvider> providerAdapter;
+
+        BillPaymentServiceProvidersAdapter(Gson gson, TypeAdapterFactory factory) {
+            super(gson, factory, BxApi.BillPaymentServiceProviders.class);
+            providerAdapter = adapter(BillPaymentServiceProvider.class);
+        }
+
+        @Override
+        BxApi.BillPaymentServiceProviders newInstance() {
+            return new BxApi.BillPaymentServiceProviders();
+        }
+
+        @Override
+        boolean readField(BxApi.BillPaymentServiceProviders response, String name, JsonReader in)
+                throws IOException {
+            if (!name.equals("providers")) {
+                return false;
+            }
+            response.providers = readArray(in, providerAdapter, new BillPaymentServiceProvider[0]);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package se.anyro.bx.backfill;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import se.anyro.bx.BxApi;
+import se.anyro.bx.RateLimiter;
+import se.anyro.bx.types.Pairing;
+import se.anyro.bx.types.TradeData;
+import se.anyro.bx.types.Transaction;
+
+/**
+ * Downloads historical trade data per pairing and day, and the transaction history per date window, on a fixed number
+ * of threads. Completed tasks are recorded in a checkpoint file so an interrupted backfill continues where it stopped
+ * when run again.
+ * <p>
+ * The historical trade data is fetched in parallel. The transaction history is fetched one window at a time on a single
+ * thread, since BX rejects private requests with nonces arriving out of order. The other threads keep fetching trade
+ * data meanwhile.
+ *
+ * <pre>
+ * Backfill backfill = new Backfill(bx, new File("backfill.checkpoint"), 4, new RateLimiter(5, 5));
+ * backfill.addTradeDataForAllPairings(from, to);
+ * BackfillReport report = backfill.run(sink);
+ * </pre>
+ */
+public class Backfill {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final BxApi bx;
+    private final File checkpointFile;
+    private final int threads;
+    private final RateLimiter rateLimiter;
+    private final List<Task> tasks = new ArrayList<>();
+    private int maxRetries = 2;
+    private long retryDelayMillis = 500;
+
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger uncheckpointed = new AtomicInteger();
+    private final AtomicReference<Exception> firstError = new AtomicReference<>();
+    private volatile int skipped;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    /**
+     * @param bx
+     *            With api key and secret if the transaction history is included
+     * @param checkpointFile
+     *            Created if missing
+     * @param threads
+     *            Number of requests in flight at once
+     * @param rateLimiter
+     *            Optional limit shared by all threads
+     */
+    public Backfill(BxApi bx, File checkpointFile, int threads, RateLimiter rateLimiter) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread needed");
+        }
+        this.bx = bx;
+        this.checkpointFile = checkpointFile;
+        this.threads = threads;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * @param maxRetries
+     *            Number of times to retry a failed request before giving up on the task until the next run. Default 2.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param retryDelayMillis
+     *            Time to wait before the first retry of a failed request. Doubled for each following retry. Default
+     *            500.
+     */
+    public void setRetryDelay(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Add one task per day for the historical trade data of a pairing.
+     *
+     * @param from
+     *            First day
+     * @param to
+     *            Last day, inclusive
+     */
+    public void addTradeData(int pairingId, Date from, Date to) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        Calendar day = startOfDay(from);
+        while (!day.getTime().after(to)) {
+            tasks.add(new TradeDataTask(pairingId, format.format(day.getTime())));
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    /**
+     * Add the historical trade data of all currency pairings, one task per pairing and day.
+     */
+    public void addTradeDataForAllPairings(Date from, Date to) throws IOException {
+        for (Pairing pairing : bx.getCurrencyPairings()) {
+            addTradeData(pairing.pairing_id, from, to);
+        }
+    }
+
+    /**
+     * Add the transaction history, one task per window. Each window only delivers the transactions dated from its
+     * start up to, but not including, its end, except the last one which includes the end. So a transaction at the
+     * boundary of two windows is only delivered once even though BX returns it for both. Transactions without a date
+     * are only delivered by the last window.
+     *
+     * @param windowDays
+     *            Number of days in each window
+     * @param twofa
+     *            Optional 2 Factor Authentication value
+     */
+    public void addTransactionHistory(Date from, Date to, int windowDays, String twofa) {
+        if (windowDays < 1) {
+            throw new IllegalArgumentException("Window must be at least one day");
+        }
+        long windowMillis = windowDays * DAY_MILLIS;
+        for (long start = from.getTime(); start < to.getTime(); start += windowMillis) {
+            long end = Math.min(start + windowMillis, to.getTime());
+            tasks.add(new TransactionTask(new Date(start), new Date(end), end == to.getTime(), twofa));
+        }
+    }
+
+    /**
+     * Run all tasks that aren't done yet and wait for them to finish.
+     *
+     * @return the final report. Failed tasks can be retried by running again.
+     */
+    public BackfillReport run(final BackfillSink sink) throws IOException, InterruptedException {
+        startNanos = System.nanoTime();
+        endNanos = 0;
+        completed.set(0);
+        failed.set(0);
+        uncheckpointed.set(0);
+        firstError.set(null);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (final Checkpoint checkpoint = openCheckpoint()) {
+            int alreadyDone = 0;
+            final List<Task> privateTasks = new ArrayList<>();
+            for (final Task task : tasks) {
+                if (checkpoint.isDone(task.key)) {
+                    ++alreadyDone;
+                } else if (task.isPrivate()) {
+                    privateTasks.add(task);
+                } else {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            runTask(task, sink, checkpoint);
+                        }
+                    });
+                }
+            }
+            if (!privateTasks.isEmpty()) {
+                // One lane for the private tasks so their nonces arrive in order
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Task task : privateTasks) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return;
+                            }
+                            runTask(task, sink, checkpoint);
+                        }
+                    }
+                });
+            }
+            skipped = alreadyDone;
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Keep waiting
+            }
+        } finally {
+            executor.shutdownNow();
+            endNanos = System.nanoTime();
+        }
+        return getProgress();
+    }
+
+    /**
+     * @return the progress so far. Can be called from another thread while running.
+     */
+    public BackfillReport getProgress() {
+        BackfillReport report = new BackfillReport();
+        report.total = tasks.size();
+        report.skipped = skipped;
+        report.completed = completed.get();
+        report.failed = failed.get();
+        report.uncheckpointed = uncheckpointed.get();
+        report.firstError = firstError.get();
+        if (startNanos != 0) {
+            report.elapsedNanos = (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+        }
+        return report;
+    }
+
+    Checkpoint openCheckpoint() throws IOException {
+        return new Checkpoint(checkpointFile);
+    }
+
+    private void runTask(Task task, BackfillSink sink, Checkpoint checkpoint) {
+        for (int attempt = 0;; ++attempt) {
+            try {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+                task.run(sink);
+            } catch (IOException e) {
+                if (attempt >= maxRetries || !sleepBeforeRetry(attempt)) {
+                    failed.incrementAndGet();
+                    firstError.compareAndSet(null, e);
+                    return;
+                }
+                continue;
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                firstError.compareAndSet(null, e);
+                return;
+            }
+            completed.incrementAndGet();
+            try {
+                checkpoint.markDone(task.key);
+            } catch (IOException e) {
+                // The sink already has the data, so don't fetch it again until the next run
+                uncheckpointed.incrementAndGet();
+                firstError.compareAndSet(null, e);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Back off exponentially so a failing or rate limited endpoint isn't hit again right away.
+     *
+     * @return false if interrupted
+     */
+    private boolean sleepBeforeRetry(int attempt) {
+        long delay = retryDelayMillis << Math.min(attempt, 20);
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Calendar startOfDay(Date date) {
+        Calendar day = Calendar.getInstance();
+        day.setTime(date);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day;
+    }
+
+    private static abstract class Task {
+        final String key;
+
+        Task(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return true if the task calls the private API and must run in order with the other private tasks
+         */
+        boolean isPrivate() {
+            return false;
+        }
+
+        abstract void run(BackfillSink sink) throws IOException;
+    }
+
+    private class TradeDataTask extends Task {
+        private final int pairingId;
+        private final String date;
+
+        TradeDataTask(int pairingId, String date) {
+            super("trade:" + pairingId + ":" + date);
+            this.pairingId = pairingId;
+            this.date = date;
+        }
+
+        @Override
+        void run(BackfillSink sink) throws IOException {
+            TradeData data = bx.getHistoricalTradeData(pairingId, date);
+            sink.onTradeData(pairingId, date, data);
+        }
+    }
+
+    private class TransactionTask extends Task {
+        private final Date start;
+        private final Date end;
+        private final boolean last;
+        private final String twofa;
+
+        TransactionTask(Date start, Date end, boolean last, String twofa) {
+            super("transactions:" + start.getTime() + "-" + end.getTime());
+            this.start = start;
+            this.end = end;
+            this.last = last;
+            this.twofa = twofa;
+        }
+
+        @Override
+        boolean isPrivate() {
+            return true;
+        }
+
+        @Override
+        void run(BackfillSink sink) throws IOException {
+            Transaction[] transactions = bx.getTransactionHistory(null, null, start, end, twofa);
+            sink.onTransactions(start, end, inWindow(transactions));
+        }
+
+        /**
+         * @return the transactions dated within the window. The last window also gets those without a date.
+         */
+        private Transaction[] inWindow(Transaction[] transactions) {
+            if (transactions == null) {
+                return null;
+            }
+            List<Transaction> result = new ArrayList<>(transactions.length);
+            for (Transaction transaction : transactions) {
+                Date date = transaction.date;
+                if (date == null ? last : !date.before(start) && (date.before(end) || (last && date.equals(end)))) {
+                    result.add(transaction);
+                }
+            }
+            return result.size() == transactions.length ? transactions : result.toArray(new Transaction[result
+                    .size()]);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package se.anyro.bx.backfill;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of a {@link Backfill}, either while running or when finished.
+ */
+public class BackfillReport {
+    public int total; // Tasks added
+    public int skipped; // Already done in an earlier run
+    public int completed;
+    public int failed; // Will be retried on the next run
+    public int uncheckpointed; // Completed, but the checkpoint couldn't be written so they're fetched again next run
+    public long elapsedNanos;
+    public Exception firstError;
+
+    /**
+     * @return completed tasks per second
+     */
+    public double getThroughput() {
+        return elapsedNanos > 0 ? completed * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BackfillReport [total=" + total + ", skipped=" + skipped + ", completed=" + completed + ", failed="
+                + failed + ", uncheckpointed=" + uncheckpointed + ", seconds="
+                + TimeUnit.NANOSECONDS.toSeconds(elapsedNanos) + ", throughput="
+                + String.format("%.1f", getThroughput()) + "/s]";
+    }
+}
@@ -0,0 +1,27 @@
+package se.anyro.bx.backfill;
+
+import java.io.IOException;
+import java.util.Date;
+
+import se.anyro.bx.types.TradeData;
+import se.anyro.bx.types.Transaction;
+
+/**
+ * Receives the data fetched by a {@link Backfill}. Called from several threads at once, so implementations must be
+ * thread-safe. A task is only checkpointed as done after its data has been accepted without an exception.
+ */
+public interface BackfillSink {
+
+    /**
+     * @param date
+     *            Day in the format "YYYY-MM-DD"
+     */
+    void onTradeData(int pairingId, String date, TradeData data) throws IOException;
+
+    /**
+     * @param transactions
+     *            The transactions BX returned for the window, dated from start up to but not including end. The last
+     *            window also includes end and the transactions without a date.
+     */
+    void onTransactions(Date start, Date end, Transaction[] transactions) throws IOException;
+}
@@ -0,0 +1,57 @@
+package se.anyro.bx.backfill;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keys of completed tasks, one per line in an append-only file. Each key is flushed as soon as it's added so an
+ * interrupted run loses at most the tasks that were in progress.
+ */
+class Checkpoint implements Closeable {
+
+    private final Set<String> done = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Writer writer;
+
+    Checkpoint(File file) throws IOException {
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        done.add(line);
+                    }
+                }
+            }
+        }
+        writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    }
+
+    boolean isDone(String key) {
+        return done.contains(key);
+    }
+
+    synchronized void markDone(String key) throws IOException {
+        if (done.add(key)) {
+            writer.write(key);
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
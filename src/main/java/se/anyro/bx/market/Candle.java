@@ -0,0 +1,21 @@
+package se.anyro.bx.market;
+
+/**
+ * Open, high, low, close and volume of one time interval. Used as a reusable holder when reading from a
+ * {@link CandleSeries}.
+ */
+public class Candle {
+    public long time; // Start of the interval in milliseconds since epoch
+    public double open;
+    public double high;
+    public double low;
+    public double close;
+    public double volume;
+    public int trades;
+
+    @Override
+    public String toString() {
+        return "Candle [time=" + time + ", open=" + open + ", high=" + high + ", low=" + low + ", close=" + close
+                + ", volume=" + volume + ", trades=" + trades + "]";
+    }
+}
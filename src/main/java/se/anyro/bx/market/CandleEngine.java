@@ -0,0 +1,188 @@
+package se.anyro.bx.market;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import se.anyro.bx.BxApi;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.RecentTrades.Trade;
+
+/**
+ * Builds OHLCV candles from the recent trades of one or more currency pairings. Each poll only adds the trades that
+ * haven't been seen before, so the candles are updated in constant time per trade. Consumers read the candles from
+ * {@link #getSeries(int, CandleInterval)} without locking.
+ * <p>
+ * Note that {@link BxApi#getRecentTrades(int)} only returns the 10 latest trades, so trades can be missed if the market
+ * moves faster than the polling. To poll busy pairings more often, add the engine as a listener to a
+ * {@link TradeStream} instead of starting it.
+ */
+public class CandleEngine extends Poller implements TradeListener {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final BxApi bx;
+    private final CandleInterval[] intervals;
+    private final int capacity;
+    private final ConcurrentMap<Integer, PairingCandles> pairings = new ConcurrentHashMap<>();
+
+    /**
+     * Engine building candles of all intervals with the default capacity.
+     */
+    public CandleEngine(BxApi bx) {
+        this(bx, CandleInterval.values(), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param bx
+     *            Used for polling the recent trades
+     * @param intervals
+     *            Candle intervals to build
+     * @param capacity
+     *            Number of candles to keep for each pairing and interval
+     */
+    public CandleEngine(BxApi bx, CandleInterval[] intervals, int capacity) {
+        super("BX candles");
+        this.bx = bx;
+        this.intervals = intervals.clone();
+        this.capacity = capacity;
+    }
+
+    /**
+     * Start building candles for a currency pairing. Does nothing if already added.
+     */
+    public void addPairing(int pairingId) {
+        if (!pairings.containsKey(pairingId)) {
+            pairings.putIfAbsent(pairingId, new PairingCandles(intervals, capacity));
+        }
+    }
+
+    /**
+     * @return the candles of a pairing or null if the pairing or interval hasn't been added
+     */
+    public CandleSeries getSeries(int pairingId, CandleInterval interval) {
+        PairingCandles candles = pairings.get(pairingId);
+        return candles != null ? candles.series[interval.ordinal()] : null;
+    }
+
+    /**
+     * Fetch the recent trades of all added pairings once and update the candles.
+     */
+    public void poll() throws IOException {
+        for (Integer pairingId : pairings.keySet()) {
+            RecentTrades recentTrades = bx.getRecentTrades(pairingId);
+            onTrades(pairingId, recentTrades.trades);
+        }
+    }
+
+    /**
+     * Update the candles with trades from any source. Trades that have been seen before are ignored, identified by
+     * their trade_id. The pairing is added if needed.
+     *
+     * @param pairingId
+     *            Pairing of the trades
+     * @param trades
+     *            Trades in any order
+     * @return the number of new trades
+     */
+    public int onTrades(int pairingId, Trade[] trades) {
+        addPairing(pairingId);
+        PairingCandles candles = pairings.get(pairingId);
+        if (trades == null) {
+            return 0;
+        }
+        synchronized (candles) {
+            int added = 0;
+            // Add the new trades in id order. There are only a few so this is cheaper than sorting a copy.
+            while (true) {
+                Trade next = null;
+                for (Trade trade : trades) {
+                    if (trade.trade_id > candles.lastTradeId && (next == null || trade.trade_id < next.trade_id)) {
+                        next = trade;
+                    }
+                }
+                if (next == null) {
+                    return added;
+                }
+                candles.add(next);
+                candles.lastTradeId = next.trade_id;
+                ++added;
+            }
+        }
+    }
+
+    /**
+     * Update the candles with a trade from a {@link TradeStream}. The stream delivers each trade once, so a trade older
+     * than the last one added, like those recovered by a backfill of a gap, is merged into the candle of its interval.
+     */
+    @Override
+    public void onTrade(int pairingId, Trade trade) {
+        addPairing(pairingId);
+        PairingCandles candles = pairings.get(pairingId);
+        synchronized (candles) {
+            if (trade.trade_id > candles.lastTradeId) {
+                candles.add(trade);
+                candles.lastTradeId = trade.trade_id;
+            } else {
+                candles.insert(trade);
+            }
+        }
+    }
+
+    @Override
+    public void onGap(int pairingId, int lastTradeId, int nextTradeId) {
+        // Nothing to do. Trades backfilled into the gap are merged in by onTrade.
+    }
+
+    /**
+     * Start polling all added pairings in the background.
+     *
+     * @param periodMillis
+     *            Time between each poll in milliseconds
+     */
+    public void start(long periodMillis) {
+        startPolling(periodMillis);
+    }
+
+    @Override
+    void pollInBackground() throws IOException {
+        poll();
+    }
+
+    private static class PairingCandles {
+        final CandleSeries[] series = new CandleSeries[CandleInterval.values().length];
+        int lastTradeId;
+
+        PairingCandles(CandleInterval[] intervals, int capacity) {
+            for (CandleInterval interval : intervals) {
+                series[interval.ordinal()] = new CandleSeries(interval, capacity);
+            }
+        }
+
+        void add(Trade trade) {
+            update(trade, false);
+        }
+
+        void insert(Trade trade) {
+            update(trade, true);
+        }
+
+        private void update(Trade trade, boolean late) {
+            if (trade.trade_date == null || trade.rate == null || trade.amount == null) {
+                return;
+            }
+            long time = trade.trade_date.getTime();
+            double price = trade.rate.doubleValue();
+            double amount = trade.amount.doubleValue();
+            for (CandleSeries candles : series) {
+                if (candles != null) {
+                    if (late) {
+                        candles.insert(time, price, amount);
+                    } else {
+                        candles.add(time, price, amount);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package se.anyro.bx.market;
+
+/**
+ * Length of the candles built by {@link CandleEngine}
+ */
+public enum CandleInterval {
+
+    ONE_SECOND(1000L), ONE_MINUTE(60 * 1000L), FIVE_MINUTES(5 * 60 * 1000L), ONE_HOUR(60 * 60 * 1000L);
+
+    private final long millis;
+
+    private CandleInterval(long millis) {
+        this.millis = millis;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return the start time of the candle that the time belongs to
+     */
+    public long startOf(long timeMillis) {
+        return timeMillis - floorMod(timeMillis, millis);
+    }
+
+    private static long floorMod(long x, long y) {
+        long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+}
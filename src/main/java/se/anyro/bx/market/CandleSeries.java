@@ -0,0 +1,222 @@
+package se.anyro.bx.market;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer with the most recent candles of one interval. All fields are stored in one primitive array with the
+ * doubles as raw long bits.
+ * <p>
+ * There must only be one writer at a time, but any number of threads can read without locking. Readers use a sequence
+ * number to detect if a candle changed while they read it and then simply read it again.
+ */
+public class CandleSeries {
+
+    private static final int TIME = 0;
+    private static final int OPEN = 1;
+    private static final int HIGH = 2;
+    private static final int LOW = 3;
+    private static final int CLOSE = 4;
+    private static final int VOLUME = 5;
+    private static final int TRADES = 6;
+    private static final int FIRST_TIME = 7; // Time of the opening trade
+    private static final int LAST_TIME = 8; // Time of the closing trade
+    private static final int FIELDS = 9;
+
+    private final CandleInterval interval;
+    private final int capacity;
+    private final AtomicLongArray data;
+
+    // Odd while the writer is updating
+    private volatile long sequence;
+
+    // Number of candles ever started
+    private volatile long count;
+
+    public CandleSeries(CandleInterval interval, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.interval = interval;
+        this.capacity = capacity;
+        data = new AtomicLongArray(capacity * FIELDS);
+    }
+
+    public CandleInterval getInterval() {
+        return interval;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of candles that can be read
+     */
+    public int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /**
+     * Add a trade to the current candle or start a new one. Only one thread may call this at a time.
+     *
+     * @return false if the trade is older than the current candle and therefore ignored
+     */
+    public boolean add(long timeMillis, double price, double amount) {
+        long start = interval.startOf(timeMillis);
+        long current = count;
+        if (current > 0) {
+            int slot = slot(current - 1);
+            long currentStart = data.get(slot + TIME);
+            if (start < currentStart) {
+                return false;
+            }
+            if (start == currentStart) {
+                sequence++;
+                if (price > getDouble(slot + HIGH)) {
+                    setDouble(slot + HIGH, price);
+                }
+                if (price < getDouble(slot + LOW)) {
+                    setDouble(slot + LOW, price);
+                }
+                setDouble(slot + CLOSE, price);
+                setDouble(slot + VOLUME, getDouble(slot + VOLUME) + amount);
+                data.set(slot + TRADES, data.get(slot + TRADES) + 1);
+                data.set(slot + LAST_TIME, timeMillis);
+                sequence++;
+                return true;
+            }
+        }
+        sequence++;
+        setCandle(slot(current), start, timeMillis, price, amount);
+        count = current + 1;
+        sequence++;
+        return true;
+    }
+
+    /**
+     * Add a trade that arrives after later trades, for instance from a backfill. It's merged into the candle of its
+     * interval, which is created between its neighbours if missing. Only one thread may call this at a time.
+     *
+     * @return false if the trade is older than all candles kept and therefore ignored
+     */
+    public boolean insert(long timeMillis, double price, double amount) {
+        long start = interval.startOf(timeMillis);
+        long current = count;
+        int size = (int) Math.min(current, capacity);
+        if (size == 0 || start > data.get(slot(current - 1) + TIME)) {
+            return add(timeMillis, price, amount);
+        }
+        int age = 0;
+        while (age < size && data.get(slot(current - 1 - age) + TIME) > start) {
+            ++age;
+        }
+        if (age < size && data.get(slot(current - 1 - age) + TIME) == start) {
+            int slot = slot(current - 1 - age);
+            sequence++;
+            if (price > getDouble(slot + HIGH)) {
+                setDouble(slot + HIGH, price);
+            }
+            if (price < getDouble(slot + LOW)) {
+                setDouble(slot + LOW, price);
+            }
+            if (timeMillis < data.get(slot + FIRST_TIME)) {
+                setDouble(slot + OPEN, price);
+                data.set(slot + FIRST_TIME, timeMillis);
+            }
+            if (timeMillis > data.get(slot + LAST_TIME)) {
+                setDouble(slot + CLOSE, price);
+                data.set(slot + LAST_TIME, timeMillis);
+            }
+            setDouble(slot + VOLUME, getDouble(slot + VOLUME) + amount);
+            data.set(slot + TRADES, data.get(slot + TRADES) + 1);
+            sequence++;
+            return true;
+        }
+        if (age == capacity) {
+            return false; // Would be the oldest candle, which is dropped
+        }
+        // Move the newer candles one step up to make room. The oldest is dropped if full.
+        sequence++;
+        for (long index = current - 1; index >= current - age; --index) {
+            int from = slot(index);
+            int to = slot(index + 1);
+            for (int field = 0; field < FIELDS; ++field) {
+                data.set(to + field, data.get(from + field));
+            }
+        }
+        setCandle(slot(current - age), start, timeMillis, price, amount);
+        count = current + 1;
+        sequence++;
+        return true;
+    }
+
+    /**
+     * Read the latest candle.
+     *
+     * @return false if there are no candles yet
+     */
+    public boolean getLatest(Candle candle) {
+        return get(0, candle);
+    }
+
+    /**
+     * Read a candle without locking.
+     *
+     * @param age
+     *            0 for the latest candle, 1 for the one before etc.
+     * @param candle
+     *            holder to copy the candle into
+     * @return false if there is no such candle
+     */
+    public boolean get(int age, Candle candle) {
+        while (true) {
+            long before = sequence;
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            long current = count;
+            if (age < 0 || age >= Math.min(current, capacity)) {
+                if (sequence == before) {
+                    return false;
+                }
+                continue;
+            }
+            int slot = slot(current - 1 - age);
+            candle.time = data.get(slot + TIME);
+            candle.open = getDouble(slot + OPEN);
+            candle.high = getDouble(slot + HIGH);
+            candle.low = getDouble(slot + LOW);
+            candle.close = getDouble(slot + CLOSE);
+            candle.volume = getDouble(slot + VOLUME);
+            candle.trades = (int) data.get(slot + TRADES);
+            if (sequence == before) {
+                return true;
+            }
+        }
+    }
+
+    private void setCandle(int slot, long start, long timeMillis, double price, double amount) {
+        data.set(slot + TIME, start);
+        setDouble(slot + OPEN, price);
+        setDouble(slot + HIGH, price);
+        setDouble(slot + LOW, price);
+        setDouble(slot + CLOSE, price);
+        setDouble(slot + VOLUME, amount);
+        data.set(slot + TRADES, 1);
+        data.set(slot + FIRST_TIME, timeMillis);
+        data.set(slot + LAST_TIME, timeMillis);
+    }
+
+    private int slot(long index) {
+        return (int) (index % capacity) * FIELDS;
+    }
+
+    private double getDouble(int index) {
+        return Double.longBitsToDouble(data.get(index));
+    }
+
+    private void setDouble(int index, double value) {
+        data.set(index, Double.doubleToRawLongBits(value));
+    }
+}
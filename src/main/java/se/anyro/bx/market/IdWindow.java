@@ -0,0 +1,76 @@
+package se.anyro.bx.market;
+
+import java.util.Arrays;
+
+/**
+ * Remembers which ids have been seen among the latest ones, as a bitset covering a sliding window below the highest
+ * id seen. Ids below the window count as seen. Not thread-safe.
+ */
+class IdWindow {
+
+    private final long[] bits;
+    private final int mask;
+    private boolean empty = true;
+    private int highest;
+
+    /**
+     * @param capacity
+     *            Number of ids covered, rounded up to a power of two of at least 64
+     */
+    IdWindow(int capacity) {
+        int size = Integer.highestOneBit(Math.max(64, capacity) - 1) << 1;
+        bits = new long[size >>> 6];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the number of ids covered
+     */
+    int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the highest id seen or 0 if none
+     */
+    int getHighest() {
+        return highest;
+    }
+
+    boolean contains(int id) {
+        if (empty || id > highest) {
+            return false;
+        }
+        if ((long) highest - id > mask) {
+            return true; // Too old to tell
+        }
+        return (bits[(id & mask) >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Mark an id as seen. Bits are indexed by the low bits of the id, so a shift by the id picks the bit in the word.
+     * 
+     * @return false if the id had been seen before
+     */
+    boolean add(int id) {
+        if (contains(id)) {
+            return false;
+        }
+        if (empty) {
+            empty = false;
+            highest = id;
+        } else if (id > highest) {
+            // Forget the ids that fall out of the window
+            if ((long) id - highest > mask) {
+                Arrays.fill(bits, 0);
+            } else {
+                for (int i = highest + 1; i <= id; ++i) {
+                    bits[(i & mask) >>> 6] &= ~(1L << i);
+                }
+            }
+            highest = id;
+        }
+        bits[(id & mask) >>> 6] |= 1L << id;
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+package se.anyro.bx.market;
+
+/**
+ * Minimal open addressing hash map with int keys, avoiding the boxing and entry objects of a HashMap. Not thread-safe.
+ */
+class IntMap<V> {
+
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private boolean hasFreeKey;
+    private V freeValue;
+
+    IntMap() {
+        this(16);
+    }
+
+    IntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        if (key == FREE) {
+            return hasFreeKey ? freeValue : null;
+        }
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return (V) values[i];
+            }
+            if (k == FREE) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return the previous value or null
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (key == FREE) {
+            V previous = freeValue;
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+            }
+            freeValue = value;
+            return previous;
+        }
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            if (k == FREE) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 2 > keys.length) {
+                    rehash(keys.length * 2);
+                }
+                return null;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; ++j) {
+            int key = oldKeys[j];
+            if (key != FREE) {
+                int i = hash(key) & mask;
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,239 @@
+package se.anyro.bx.market;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import se.anyro.bx.types.OrderBook;
+
+/**
+ * Depth queries on an order book, answered by binary search over cumulative amount and cost arrays instead of
+ * iterating the rows. Each row of the order book is expected to hold the rate followed by the amount of the secondary
+ * currency. Rows that are null or incomplete are skipped. Prices and amounts are stored as doubles, so the results
+ * are approximate.
+ * <p>
+ * When a new snapshot arrives, only the levels from the first changed row and down are recalculated. Not thread-safe.
+ */
+public class OrderBookAnalytics {
+
+    private final Side bids = new Side();
+    private final Side asks = new Side();
+
+    /**
+     * Update with a new snapshot, for instance from {@link se.anyro.bx.BxApi#getOrderBook(int)}.
+     */
+    public void update(OrderBook orderBook) {
+        bids.update(orderBook.bids);
+        asks.update(orderBook.asks);
+    }
+
+    /**
+     * @return the highest bid or NaN if there are no bids
+     */
+    public double getBestBid() {
+        return bids.best();
+    }
+
+    /**
+     * @return the lowest ask or NaN if there are no asks
+     */
+    public double getBestAsk() {
+        return asks.best();
+    }
+
+    /**
+     * @return the total amount of all bids
+     */
+    public double getBidDepth() {
+        return bids.totalAmount();
+    }
+
+    /**
+     * @return the total amount of all asks
+     */
+    public double getAskDepth() {
+        return asks.totalAmount();
+    }
+
+    /**
+     * @return the cost of buying an amount at market or NaN if there isn't enough depth
+     * @throws IllegalArgumentException
+     *             if the amount isn't a positive finite number
+     */
+    public double getCostToBuy(double amount) {
+        checkAmount(amount);
+        return asks.cost(amount);
+    }
+
+    /**
+     * @return the proceeds of selling an amount at market or NaN if there isn't enough depth
+     * @throws IllegalArgumentException
+     *             if the amount isn't a positive finite number
+     */
+    public double getProceedsToSell(double amount) {
+        checkAmount(amount);
+        return bids.cost(amount);
+    }
+
+    /**
+     * @return the worst ask price reached when buying an amount or NaN if there isn't enough depth
+     */
+    public double getAskPriceAtDepth(double amount) {
+        return asks.priceAtDepth(amount);
+    }
+
+    /**
+     * @return the worst bid price reached when selling an amount or NaN if there isn't enough depth
+     */
+    public double getBidPriceAtDepth(double amount) {
+        return bids.priceAtDepth(amount);
+    }
+
+    /**
+     * @return the volume weighted average price of buying an amount at market or NaN if there isn't enough depth
+     * @throws IllegalArgumentException
+     *             if the amount isn't a positive finite number
+     */
+    public double getBuyVwap(double amount) {
+        checkAmount(amount);
+        return asks.cost(amount) / amount;
+    }
+
+    /**
+     * @return the volume weighted average price of selling an amount at market or NaN if there isn't enough depth
+     * @throws IllegalArgumentException
+     *             if the amount isn't a positive finite number
+     */
+    public double getSellVwap(double amount) {
+        checkAmount(amount);
+        return bids.cost(amount) / amount;
+    }
+
+    /**
+     * @return how much worse than the best ask the average buy price is, as a fraction. 0.01 means 1%.
+     * @throws IllegalArgumentException
+     *             if the amount isn't a positive finite number
+     */
+    public double getBuySlippage(double amount) {
+        return getBuyVwap(amount) / asks.best() - 1;
+    }
+
+    /**
+     * @return how much worse than the best bid the average sell price is, as a fraction. 0.01 means 1%.
+     * @throws IllegalArgumentException
+     *             if the amount isn't a positive finite number
+     */
+    public double getSellSlippage(double amount) {
+        return 1 - getSellVwap(amount) / bids.best();
+    }
+
+    /**
+     * Imbalance between the amounts of the top levels on each side.
+     *
+     * @param levels
+     *            Number of levels to include on each side
+     * @return between -1 (only asks) and 1 (only bids), or NaN if both sides are empty
+     */
+    public double getImbalance(int levels) {
+        double bidAmount = bids.amountOfLevels(levels);
+        double askAmount = asks.amountOfLevels(levels);
+        return (bidAmount - askAmount) / (bidAmount + askAmount);
+    }
+
+    private static void checkAmount(double amount) {
+        if (!(amount > 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Amount must be positive and finite: " + amount);
+        }
+    }
+
+    private static class Side {
+        double[] prices = new double[0];
+        double[] amounts = new double[0];
+        double[] cumulativeAmounts = new double[0]; // Total amount of this level and all better ones
+        double[] cumulativeCosts = new double[0]; // Total price * amount of this level and all better ones
+        int levels;
+
+        void update(BigDecimal[][] rows) {
+            int count = rows != null ? rows.length : 0;
+            if (count > prices.length) {
+                int capacity = Math.max(count, prices.length * 2);
+                prices = Arrays.copyOf(prices, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                cumulativeAmounts = Arrays.copyOf(cumulativeAmounts, capacity);
+                cumulativeCosts = Arrays.copyOf(cumulativeCosts, capacity);
+            }
+            int first = -1; // First changed level
+            int level = 0;
+            for (int i = 0; i < count; ++i) {
+                BigDecimal[] row = rows[i];
+                if (row == null || row.length < 2 || row[0] == null || row[1] == null) {
+                    continue;
+                }
+                double price = row[0].doubleValue();
+                double amount = row[1].doubleValue();
+                if (first < 0 && (level >= levels || price != prices[level] || amount != amounts[level])) {
+                    first = level;
+                }
+                prices[level] = price;
+                amounts[level] = amount;
+                ++level;
+            }
+            count = level;
+            if (first < 0) {
+                first = count;
+            }
+            for (int i = first; i < count; ++i) {
+                double amount = amounts[i];
+                double cost = prices[i] * amount;
+                cumulativeAmounts[i] = i > 0 ? cumulativeAmounts[i - 1] + amount : amount;
+                cumulativeCosts[i] = i > 0 ? cumulativeCosts[i - 1] + cost : cost;
+            }
+            levels = count;
+        }
+
+        double best() {
+            return levels > 0 ? prices[0] : Double.NaN;
+        }
+
+        double totalAmount() {
+            return levels > 0 ? cumulativeAmounts[levels - 1] : 0;
+        }
+
+        double amountOfLevels(int count) {
+            int last = Math.min(count, levels) - 1;
+            return last >= 0 ? cumulativeAmounts[last] : 0;
+        }
+
+        double cost(double amount) {
+            int level = levelOf(amount);
+            if (level < 0) {
+                return Double.NaN;
+            }
+            double costBefore = level > 0 ? cumulativeCosts[level - 1] : 0;
+            double amountBefore = level > 0 ? cumulativeAmounts[level - 1] : 0;
+            return costBefore + (amount - amountBefore) * prices[level];
+        }
+
+        double priceAtDepth(double amount) {
+            int level = levelOf(amount);
+            return level >= 0 ? prices[level] : Double.NaN;
+        }
+
+        /**
+         * @return the first level where the cumulative amount reaches the amount, or -1 if there isn't enough depth
+         */
+        int levelOf(double amount) {
+            if (levels == 0 || amount > cumulativeAmounts[levels - 1]) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(cumulativeAmounts, 0, levels, amount);
+            if (index < 0) {
+                return -index - 1;
+            }
+            // Exact match. Use the first level with this cumulative amount in case of empty levels.
+            while (index > 0 && cumulativeAmounts[index - 1] == amount) {
+                --index;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package se.anyro.bx.market;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base of the classes that poll BX in the background. Polls at a fixed rate on a daemon thread between
+ * {@link #startPolling(long)} and {@link #stop()}. Errors are kept for inspection instead of stopping the polling.
+ */
+public abstract class Poller {
+
+    private final String threadName;
+    private ScheduledExecutorService executor;
+    private volatile Exception lastError;
+
+    Poller(String threadName) {
+        this.threadName = threadName;
+    }
+
+    /**
+     * Called on the polling thread at each tick.
+     */
+    abstract void pollInBackground() throws IOException;
+
+    /**
+     * @throws IllegalStateException
+     *             if already started
+     */
+    synchronized void startPolling(long periodMillis) {
+        if (executor != null) {
+            throw new IllegalStateException("Already started");
+        }
+        lastError = null;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pollInBackground();
+                } catch (Exception e) {
+                    lastError = e;
+                }
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background polling.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return the last error from the background polling or null
+     */
+    public synchronized Exception getLastError() {
+        return executor != null ? lastError : null;
+    }
+}
@@ -0,0 +1,92 @@
+package se.anyro.bx.market;
+
+import java.math.BigDecimal;
+
+import se.anyro.bx.types.Ticker;
+
+/**
+ * What changed in the ticker of a currency pairing since the previous poll. The deltas are zero for fields that didn't
+ * change and null if the value is missing in either ticker.
+ */
+public class TickerDelta {
+
+    public static final int LAST_PRICE = 1;
+    public static final int VOLUME = 1 << 1;
+    public static final int BID = 1 << 2;
+    public static final int ASK = 1 << 3;
+    public static final int CHANGE = 1 << 4;
+    public static final int NEW = 1 << 5; // First ticker of the pairing
+
+    public int pairing_id;
+    public Ticker previous; // Null for new pairings
+    public Ticker current;
+    public int changed; // Bit mask of the constants above
+    public BigDecimal last_price;
+    public BigDecimal volume_24hours;
+    public BigDecimal highbid;
+    public BigDecimal lowask;
+
+    public boolean hasChanged(int field) {
+        return (changed & field) != 0;
+    }
+
+    /**
+     * @return the delta or null if nothing changed
+     */
+    static TickerDelta compute(Ticker previous, Ticker current) {
+        int changed = 0;
+        if (previous == null) {
+            changed = NEW | LAST_PRICE | VOLUME | BID | ASK | CHANGE;
+        } else {
+            if (differs(previous.last_price, current.last_price)) {
+                changed |= LAST_PRICE;
+            }
+            if (differs(previous.volume_24hours, current.volume_24hours)) {
+                changed |= VOLUME;
+            }
+            if (differs(bid(previous), bid(current))) {
+                changed |= BID;
+            }
+            if (differs(ask(previous), ask(current))) {
+                changed |= ASK;
+            }
+            if (differs(previous.change, current.change)) {
+                changed |= CHANGE;
+            }
+            if (changed == 0) {
+                return null;
+            }
+        }
+        TickerDelta delta = new TickerDelta();
+        delta.pairing_id = current.pairing_id;
+        delta.previous = previous;
+        delta.current = current;
+        delta.changed = changed;
+        if (previous != null) {
+            delta.last_price = subtract(current.last_price, previous.last_price);
+            delta.volume_24hours = subtract(current.volume_24hours, previous.volume_24hours);
+            delta.highbid = subtract(bid(current), bid(previous));
+            delta.lowask = subtract(ask(current), ask(previous));
+        }
+        return delta;
+    }
+
+    private static BigDecimal bid(Ticker ticker) {
+        return ticker.orderbook != null && ticker.orderbook.bids != null ? ticker.orderbook.bids.highbid : null;
+    }
+
+    private static BigDecimal ask(Ticker ticker) {
+        return ticker.orderbook != null && ticker.orderbook.asks != null ? ticker.orderbook.asks.highbid : null;
+    }
+
+    private static boolean differs(BigDecimal a, BigDecimal b) {
+        if (a == null || b == null) {
+            return a != b;
+        }
+        return a.compareTo(b) != 0;
+    }
+
+    private static BigDecimal subtract(BigDecimal a, BigDecimal b) {
+        return a != null && b != null ? a.subtract(b) : null;
+    }
+}
@@ -0,0 +1,92 @@
+package se.anyro.bx.market;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import se.anyro.bx.BxApi;
+import se.anyro.bx.types.Ticker;
+
+/**
+ * Polls the market data and only delivers the tickers that changed since the previous poll, together with what
+ * changed. Compares last price, 24 hour volume, best bid, best ask and the change field.
+ */
+public class TickerFeed extends Poller {
+
+    private final BxApi bx;
+    private final IntMap<Ticker> lastTickers = new IntMap<>(64);
+    private final List<TickerListener> listeners = new CopyOnWriteArrayList<>();
+
+    public TickerFeed(BxApi bx) {
+        super("BX tickers");
+        this.bx = bx;
+    }
+
+    public void addListener(TickerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TickerListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the latest ticker of a currency pairing or null if not received yet
+     */
+    public Ticker getTicker(int pairingId) {
+        synchronized (lastTickers) {
+            return lastTickers.get(pairingId);
+        }
+    }
+
+    /**
+     * Fetch the market data once and notify the listeners about the changes.
+     *
+     * @return the number of changed tickers
+     */
+    public int poll() throws IOException {
+        return onTickers(bx.getMarketData());
+    }
+
+    /**
+     * Update the feed with tickers from any source and notify the listeners about the changes.
+     *
+     * @return the number of changed tickers
+     */
+    public int onTickers(Ticker[] tickers) {
+        int changes = 0;
+        for (Ticker ticker : tickers) {
+            if (ticker == null) {
+                continue; // BX sends null for a pairing without market data
+            }
+            TickerDelta delta;
+            synchronized (lastTickers) {
+                delta = TickerDelta.compute(lastTickers.get(ticker.pairing_id), ticker);
+                if (delta == null) {
+                    continue;
+                }
+                lastTickers.put(ticker.pairing_id, ticker);
+            }
+            ++changes;
+            for (TickerListener listener : listeners) {
+                listener.onTickerChanged(delta);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Start polling in the background.
+     *
+     * @param periodMillis
+     *            Time between each poll in milliseconds
+     */
+    public void start(long periodMillis) {
+        startPolling(periodMillis);
+    }
+
+    @Override
+    void pollInBackground() throws IOException {
+        poll();
+    }
+}
@@ -0,0 +1,12 @@
+package se.anyro.bx.market;
+
+/**
+ * Receives the tickers that changed in a {@link TickerFeed}
+ */
+public interface TickerListener {
+
+    /**
+     * Called on the polling thread once for each changed ticker.
+     */
+    void onTickerChanged(TickerDelta delta);
+}
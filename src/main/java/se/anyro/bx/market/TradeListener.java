@@ -0,0 +1,25 @@
+package se.anyro.bx.market;
+
+import se.anyro.bx.types.RecentTrades.Trade;
+
+/**
+ * Receives the new trades of a {@link TradeStream}
+ */
+public interface TradeListener {
+
+    /**
+     * Called once for each trade that hasn't been seen before, in trade_id order within each batch.
+     */
+    void onTrade(int pairingId, Trade trade);
+
+    /**
+     * Called when trades may have been missed between two polls, before the new trades are delivered. The missing
+     * trades can be backfilled from other sources and passed to {@link TradeStream#onTrades(int, Trade[])}.
+     *
+     * @param lastTradeId
+     *            Last trade seen before the gap
+     * @param nextTradeId
+     *            First trade seen after the gap
+     */
+    void onGap(int pairingId, int lastTradeId, int nextTradeId);
+}
@@ -0,0 +1,331 @@
+package se.anyro.bx.market;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import se.anyro.bx.BxApi;
+import se.anyro.bx.types.RecentTrades.Trade;
+
+/**
+ * Turns polls of the recent trades into a stream of new trades per currency pairing. Trades seen before are
+ * recognized by their trade_id in a bitset of the latest ids, so they are never delivered twice, even when they are
+ * also passed in from a backfill.
+ * <p>
+ * Since {@link BxApi#getRecentTrades(int)} only returns the {@value #RECENT_TRADES} latest trades, trades are lost if
+ * more than that happen between two polls. A gap is detected when a full batch contains no trade seen before. The
+ * number of missed trades is estimated from the ids, which is an upper bound since the ids can be shared with other
+ * pairings. Each pairing is polled more often after a gap or when busy, and less often when quiet.
+ *
+ * <pre>
+ * TradeStream stream = new TradeStream(bx);
+ * stream.addListener(candleEngine);
+ * stream.addPairing(1);
+ * stream.start();
+ * </pre>
+ */
+public class TradeStream extends Poller {
+
+    /**
+     * Number of trades returned by {@link BxApi#getRecentTrades(int)}
+     */
+    public static final int RECENT_TRADES = 10;
+
+    public static final long DEFAULT_MIN_INTERVAL = 250;
+    public static final long DEFAULT_MAX_INTERVAL = 10000;
+    public static final int DEFAULT_WINDOW = 4096;
+
+    private final BxApi bx;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final int window;
+    private final IntMap<PairingTrades> pairings = new IntMap<>();
+    private final List<PairingTrades> pairingList = new ArrayList<>(); // Same as in pairings, for iterating
+    private final List<TradeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Stream with the default poll intervals and window.
+     */
+    public TradeStream(BxApi bx) {
+        this(bx, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param bx
+     *            Used for polling the recent trades
+     * @param minIntervalMillis
+     *            Shortest time between two polls of a pairing
+     * @param maxIntervalMillis
+     *            Longest time between two polls of a pairing. Also the interval a pairing starts with.
+     * @param window
+     *            Number of the latest trade ids remembered per pairing
+     */
+    public TradeStream(BxApi bx, long minIntervalMillis, long maxIntervalMillis, int window) {
+        super("BX trades");
+        if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("Invalid poll intervals");
+        }
+        this.bx = bx;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.window = window;
+    }
+
+    public void addListener(TradeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TradeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start streaming the trades of a currency pairing. Does nothing if already added.
+     */
+    public void addPairing(int pairingId) {
+        getPairing(pairingId);
+    }
+
+    /**
+     * Fetch the recent trades of a pairing once and deliver the new ones. If the call fails, the poll interval of the
+     * pairing is doubled, up to the longest interval, so a failing endpoint isn't called on every tick.
+     *
+     * @return the number of new trades
+     */
+    public int poll(int pairingId) throws IOException {
+        Trade[] trades;
+        try {
+            trades = bx.getRecentTrades(pairingId).trades;
+        } catch (IOException | RuntimeException e) {
+            PairingTrades pairing = getPairing(pairingId);
+            synchronized (pairings) {
+                pairing.backOff(TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis));
+            }
+            throw e;
+        }
+        return onRecentTrades(pairingId, trades);
+    }
+
+    /**
+     * Poll the pairings whose poll interval has passed since their last poll. If a poll fails, the other pairings
+     * are still polled and the last error is thrown afterwards.
+     *
+     * @return the number of new trades
+     */
+    public int pollDue() throws IOException {
+        long now = System.nanoTime();
+        int[] due;
+        synchronized (pairings) {
+            due = new int[pairingList.size()];
+            int count = 0;
+            for (PairingTrades trades : pairingList) {
+                if (now - trades.nextPollNanos >= 0) {
+                    due[count++] = trades.pairingId;
+                }
+            }
+            due = Arrays.copyOf(due, count);
+        }
+        int added = 0;
+        IOException error = null;
+        for (int pairingId : due) {
+            try {
+                added += poll(pairingId);
+            } catch (IOException e) {
+                error = e; // Poll the other pairings anyway
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return added;
+    }
+
+    /**
+     * Update the stream with the latest trades of a pairing, as returned by {@link BxApi#getRecentTrades(int)}.
+     * Detects gaps and adjusts the poll interval of the pairing.
+     *
+     * @return the number of new trades
+     */
+    public int onRecentTrades(int pairingId, Trade[] trades) {
+        return deliver(getPairing(pairingId), trades, true);
+    }
+
+    /**
+     * Update the stream with trades from any other source, for instance a backfill of a gap. Only the trades not seen
+     * before are delivered.
+     *
+     * @return the number of new trades
+     */
+    public int onTrades(int pairingId, Trade[] trades) {
+        return deliver(getPairing(pairingId), trades, false);
+    }
+
+    /**
+     * @return the current poll interval of a pairing in milliseconds, or 0 if not added
+     */
+    public long getPollInterval(int pairingId) {
+        synchronized (pairings) {
+            PairingTrades trades = pairings.get(pairingId);
+            return trades != null ? TimeUnit.NANOSECONDS.toMillis(trades.intervalNanos) : 0;
+        }
+    }
+
+    /**
+     * @return the number of gaps detected for a pairing
+     */
+    public long getGapCount(int pairingId) {
+        synchronized (pairings) {
+            PairingTrades trades = pairings.get(pairingId);
+            return trades != null ? trades.gaps : 0;
+        }
+    }
+
+    /**
+     * @return an upper bound of the number of trades missed in the gaps of a pairing
+     */
+    public long getMissedTrades(int pairingId) {
+        synchronized (pairings) {
+            PairingTrades trades = pairings.get(pairingId);
+            return trades != null ? trades.missed : 0;
+        }
+    }
+
+    /**
+     * @return the number of gaps detected for all pairings
+     */
+    public long getGapCount() {
+        long gaps = 0;
+        synchronized (pairings) {
+            for (PairingTrades trades : pairingList) {
+                gaps += trades.gaps;
+            }
+        }
+        return gaps;
+    }
+
+    /**
+     * @return an upper bound of the number of trades missed in the gaps of all pairings
+     */
+    public long getMissedTrades() {
+        long missed = 0;
+        synchronized (pairings) {
+            for (PairingTrades trades : pairingList) {
+                missed += trades.missed;
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Start polling all added pairings in the background, each at its own interval.
+     */
+    public void start() {
+        startPolling(minIntervalMillis);
+    }
+
+    @Override
+    void pollInBackground() throws IOException {
+        pollDue();
+    }
+
+    private PairingTrades getPairing(int pairingId) {
+        synchronized (pairings) {
+            PairingTrades trades = pairings.get(pairingId);
+            if (trades == null) {
+                trades = new PairingTrades(pairingId, window, TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis));
+                pairings.put(pairingId, trades);
+                pairingList.add(trades);
+            }
+            return trades;
+        }
+    }
+
+    private int deliver(PairingTrades pairing, Trade[] trades, boolean recent) {
+        if (trades == null) {
+            trades = new Trade[0];
+        }
+        Trade[] added = new Trade[trades.length];
+        int count = 0;
+        int lastTradeId;
+        boolean gap;
+        synchronized (pairings) {
+            lastTradeId = pairing.seen.getHighest();
+            boolean overlaps = false;
+            for (Trade trade : trades) {
+                if (pairing.seen.add(trade.trade_id)) {
+                    // Insertion sort by id. There are only a few trades.
+                    int i = count++;
+                    while (i > 0 && added[i - 1].trade_id > trade.trade_id) {
+                        added[i] = added[i - 1];
+                        --i;
+                    }
+                    added[i] = trade;
+                } else {
+                    overlaps = true;
+                }
+            }
+            gap = recent && lastTradeId != 0 && !overlaps && trades.length >= RECENT_TRADES
+                    && added[0].trade_id > lastTradeId + 1;
+            if (gap) {
+                ++pairing.gaps;
+                pairing.missed += added[0].trade_id - lastTradeId - 1;
+            }
+            if (recent) {
+                pairing.adjustInterval(gap, count, TimeUnit.MILLISECONDS.toNanos(minIntervalMillis),
+                        TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis));
+            }
+        }
+        for (TradeListener listener : listeners) {
+            if (gap) {
+                listener.onGap(pairing.pairingId, lastTradeId, added[0].trade_id);
+            }
+            for (int i = 0; i < count; ++i) {
+                listener.onTrade(pairing.pairingId, added[i]);
+            }
+        }
+        return count;
+    }
+
+    private static class PairingTrades {
+        final int pairingId;
+        final IdWindow seen;
+        long intervalNanos;
+        long nextPollNanos;
+        long gaps;
+        long missed;
+
+        PairingTrades(int pairingId, int window, long intervalNanos) {
+            this.pairingId = pairingId;
+            this.seen = new IdWindow(window);
+            this.intervalNanos = intervalNanos;
+            this.nextPollNanos = System.nanoTime();
+        }
+
+        /**
+         * Halve the interval after a gap, shorten it when more than half the batch was new and lengthen it when
+         * nothing was.
+         */
+        void adjustInterval(boolean gap, int newTrades, long min, long max) {
+            if (gap) {
+                intervalNanos /= 2;
+            } else if (newTrades * 2 > RECENT_TRADES) {
+                intervalNanos -= intervalNanos / 4;
+            } else if (newTrades == 0) {
+                intervalNanos += intervalNanos / 4;
+            }
+            intervalNanos = Math.max(min, Math.min(max, intervalNanos));
+            nextPollNanos = System.nanoTime() + intervalNanos;
+        }
+
+        /**
+         * Double the interval after a failed poll.
+         */
+        void backOff(long max) {
+            intervalNanos = Math.min(max, intervalNanos * 2);
+            nextPollNanos = System.nanoTime() + intervalNanos;
+        }
+    }
+}
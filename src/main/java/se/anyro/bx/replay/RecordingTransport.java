@@ -0,0 +1,192 @@
+package se.anyro.bx.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import se.anyro.bx.IoUtils;
+import se.anyro.bx.Transport;
+
+/**
+ * Transport that records all requests and responses to a traffic log while passing them on to another transport.
+ * The API key, signature and 2FA values are removed from the recorded requests.
+ * <p>
+ * Example: {@code new BxApi(new RecordingTransport(Transport.DEFAULT, new TrafficLogWriter(file)))}
+ */
+public class RecordingTransport implements Transport {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Transport delegate;
+    private final TrafficLogWriter log;
+    private final long startNanos = System.nanoTime();
+
+    public RecordingTransport(Transport delegate, TrafficLogWriter log) {
+        this.delegate = delegate;
+        this.log = log;
+    }
+
+    @Override
+    public HttpURLConnection open(URL url) throws IOException {
+        return new RecordingConnection(url);
+    }
+
+    /**
+     * Replace the values of secret parameters with "-".
+     */
+    static String redact(String parameters) {
+        StringBuilder result = new StringBuilder(parameters.length());
+        for (String parameter : parameters.split("&")) {
+            if (result.length() > 0) {
+                result.append('&');
+            }
+            if (parameter.startsWith("key=") || parameter.startsWith("signature=") || parameter.startsWith("twofa=")) {
+                result.append(parameter, 0, parameter.indexOf('=') + 1).append('-');
+            } else {
+                result.append(parameter);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Collects the request settings and forwards them to the real connection when connecting. The response is read
+     * fully and recorded before it's handed over.
+     */
+    private class RecordingConnection extends HttpURLConnection {
+
+        private HttpURLConnection real;
+        private long connectNanos;
+        private ByteArrayOutputStream requestBody;
+        private OutputStream output;
+        private InputStream input;
+
+        RecordingConnection(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (real != null) {
+                return;
+            }
+            connectNanos = System.nanoTime();
+            HttpURLConnection con = delegate.open(url);
+            con.setConnectTimeout(getConnectTimeout());
+            con.setReadTimeout(getReadTimeout());
+            con.setUseCaches(getUseCaches());
+            con.setDoOutput(getDoOutput());
+            con.setRequestMethod(getRequestMethod());
+            for (Map.Entry<String, List<String>> property : getRequestProperties().entrySet()) {
+                for (String value : property.getValue()) {
+                    con.addRequestProperty(property.getKey(), value);
+                }
+            }
+            real = con;
+            connected = true;
+            if (!getDoOutput()) {
+                con.connect();
+            }
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            connect();
+            if (output == null) {
+                final OutputStream realOutput = real.getOutputStream();
+                requestBody = new ByteArrayOutputStream();
+                output = new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        realOutput.write(b);
+                        requestBody.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        realOutput.write(b, off, len);
+                        requestBody.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        realOutput.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        realOutput.close();
+                    }
+                };
+            }
+            return output;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            if (input == null) {
+                byte[] body;
+                try (InputStream in = real.getInputStream()) {
+                    body = IoUtils.readFully(in);
+                } catch (IOException e) {
+                    record(EMPTY);
+                    throw e;
+                }
+                record(body);
+                input = new ByteArrayInputStream(body);
+            }
+            return input;
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            connect();
+            return real.getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            connect();
+            return real.getResponseMessage();
+        }
+
+        @Override
+        public void disconnect() {
+            if (real != null) {
+                real.disconnect();
+            }
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return real != null && real.usingProxy();
+        }
+
+        private void record(byte[] body) throws IOException {
+            TrafficRecord record = new TrafficRecord();
+            record.startNanos = connectNanos - startNanos;
+            record.durationNanos = System.nanoTime() - connectNanos;
+            record.method = getRequestMethod();
+            record.url = url.toString();
+            if (requestBody != null) {
+                record.requestBody = redact(new String(requestBody.toByteArray(), StandardCharsets.UTF_8));
+            }
+            try {
+                record.responseCode = real.getResponseCode();
+                record.responseMessage = real.getResponseMessage();
+            } catch (IOException e) {
+                record.responseCode = -1; // No response at all
+            }
+            record.responseBody = body;
+            log.write(record);
+        }
+    }
+}
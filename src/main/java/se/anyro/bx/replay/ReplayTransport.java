@@ -0,0 +1,157 @@
+package se.anyro.bx.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import se.anyro.bx.Transport;
+
+/**
+ * Transport that serves the responses of a traffic log instead of calling BX. The requests must come in the same order
+ * as when they were recorded. Each response is served at the same time after the first request as when recorded,
+ * divided by the speed, so both the response times and the gaps between the requests are reproduced. A response is
+ * served immediately if the replay is already behind.
+ * <p>
+ * Example: {@code new BxApi(new ReplayTransport(file, ReplayTransport.MAX_SPEED))}
+ */
+public class ReplayTransport implements Transport {
+
+    /**
+     * Same timing as when recorded
+     */
+    public static final double ORIGINAL_SPEED = 1;
+
+    /**
+     * No delays at all
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final List<TrafficRecord> records;
+    private final double speed;
+    private int next;
+    private long replayStartNanos; // When the first record was replayed
+
+    /**
+     * @param file
+     *            Traffic log recorded with {@link RecordingTransport}
+     * @param speed
+     *            {@link #ORIGINAL_SPEED}, {@link #MAX_SPEED} or any positive factor, for instance 10 for ten times
+     *            faster than the original
+     */
+    public ReplayTransport(File file, double speed) throws IOException {
+        this(TrafficLogReader.readAll(file), speed);
+    }
+
+    public ReplayTransport(List<TrafficRecord> records, double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        this.records = new ArrayList<>(records);
+        this.speed = speed;
+    }
+
+    @Override
+    public synchronized HttpURLConnection open(URL url) throws IOException {
+        if (next >= records.size()) {
+            throw new IOException("End of replay log");
+        }
+        TrafficRecord record = records.get(next);
+        if (!record.url.equals(url.toString())) {
+            throw new IOException("Replay out of sync. Expected " + record.url + " but was " + url);
+        }
+        if (next == 0) {
+            replayStartNanos = System.nanoTime();
+        }
+        ++next;
+        long offsetNanos = record.startNanos + record.durationNanos - records.get(0).startNanos;
+        return new ReplayConnection(url, record, replayStartNanos + (long) (offsetNanos / speed));
+    }
+
+    /**
+     * @return number of responses left to replay
+     */
+    public synchronized int remaining() {
+        return records.size() - next;
+    }
+
+    /**
+     * Start over from the first record, for instance to repeat a benchmark.
+     */
+    public synchronized void rewind() {
+        next = 0;
+    }
+
+    private static class ReplayConnection extends HttpURLConnection {
+
+        private final TrafficRecord record;
+        private final long dueNanos;
+        private InputStream input;
+
+        ReplayConnection(URL url, TrafficRecord record, long dueNanos) {
+            super(url);
+            this.record = record;
+            this.dueNanos = dueNanos;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            connect();
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            if (input == null) {
+                long delayNanos = dueNanos - System.nanoTime();
+                if (delayNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(delayNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted replay");
+                    }
+                }
+                if (record.responseCode < 0 || record.responseCode >= 400) {
+                    throw new IOException("Server returned HTTP response code: " + record.responseCode
+                            + " for URL: " + url);
+                }
+                input = new ByteArrayInputStream(record.responseBody);
+            }
+            return input;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return record.responseCode;
+        }
+
+        @Override
+        public String getResponseMessage() {
+            return record.responseMessage;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+    }
+}
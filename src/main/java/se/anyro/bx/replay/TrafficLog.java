@@ -0,0 +1,29 @@
+package se.anyro.bx.replay;
+
+/**
+ * Binary format of the traffic log. A header with magic and version followed by records. Strings are a varint length
+ * followed by UTF-8 bytes.
+ * 
+ * <pre>
+ * byte     1 (0 or end of file marks the end)
+ * varlong  startNanos
+ * varlong  durationNanos
+ * string   method
+ * string   url
+ * boolean  has request body
+ * string   request body, if present
+ * varint   response code
+ * string   response message, empty if missing
+ * varint   response body length
+ * bytes    response body
+ * </pre>
+ */
+final class TrafficLog {
+
+    static final int MAGIC = 0x42585452; // "BXTR"
+    static final int VERSION = 1;
+    static final int RECORD = 1;
+
+    private TrafficLog() {
+    }
+}
@@ -0,0 +1,85 @@
+package se.anyro.bx.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.anyro.bx.IoUtils;
+
+/**
+ * Reads records from a traffic log one at a time.
+ */
+public class TrafficLogReader implements Closeable {
+
+    private final DataInputStream in;
+
+    public TrafficLogReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public TrafficLogReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != TrafficLog.MAGIC) {
+            throw new IOException("Not a traffic log");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != TrafficLog.VERSION) {
+            throw new IOException("Unsupported traffic log version " + version);
+        }
+    }
+
+    /**
+     * Read all records of a log file.
+     */
+    public static List<TrafficRecord> readAll(File file) throws IOException {
+        List<TrafficRecord> records = new ArrayList<>();
+        try (TrafficLogReader reader = new TrafficLogReader(file)) {
+            TrafficRecord record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return the next record or null at the end of the log
+     */
+    public TrafficRecord read() throws IOException {
+        int marker = in.read();
+        if (marker != TrafficLog.RECORD) {
+            return null; // End marker, or end of file if the log wasn't closed properly
+        }
+        TrafficRecord record = new TrafficRecord();
+        record.startNanos = IoUtils.readVarLong(in);
+        record.durationNanos = IoUtils.readVarLong(in);
+        record.method = readString();
+        record.url = readString();
+        if (in.readBoolean()) {
+            record.requestBody = readString();
+        }
+        record.responseCode = (int) IoUtils.readVarLong(in);
+        record.responseMessage = readString();
+        record.responseBody = new byte[(int) IoUtils.readVarLong(in)];
+        in.readFully(record.responseBody);
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[(int) IoUtils.readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
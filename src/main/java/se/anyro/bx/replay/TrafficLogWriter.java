@@ -0,0 +1,67 @@
+package se.anyro.bx.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import se.anyro.bx.IoUtils;
+
+/**
+ * Writes records to a traffic log. Thread-safe.
+ */
+public class TrafficLogWriter implements Closeable, Flushable {
+
+    private final DataOutputStream out;
+
+    public TrafficLogWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    public TrafficLogWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(TrafficLog.MAGIC);
+        this.out.writeByte(TrafficLog.VERSION);
+    }
+
+    public synchronized void write(TrafficRecord record) throws IOException {
+        out.writeByte(TrafficLog.RECORD);
+        IoUtils.writeVarLong(out, record.startNanos);
+        IoUtils.writeVarLong(out, record.durationNanos);
+        writeString(record.method);
+        writeString(record.url);
+        out.writeBoolean(record.requestBody != null);
+        if (record.requestBody != null) {
+            writeString(record.requestBody);
+        }
+        IoUtils.writeVarLong(out, record.responseCode);
+        writeString(record.responseMessage != null ? record.responseMessage : "");
+        IoUtils.writeVarLong(out, record.responseBody.length);
+        out.write(record.responseBody);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.writeByte(0);
+        out.close();
+    }
+
+    /**
+     * Length-prefixed UTF-8 since {@link DataOutputStream#writeUTF(String)} is limited to 64 KB
+     */
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        IoUtils.writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+}
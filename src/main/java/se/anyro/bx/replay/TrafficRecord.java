@@ -0,0 +1,15 @@
+package se.anyro.bx.replay;
+
+/**
+ * One recorded request and its response
+ */
+public class TrafficRecord {
+    public long startNanos; // Time since the recording started
+    public long durationNanos; // From connect until the full response was read
+    public String method; // "GET" or "POST"
+    public String url;
+    public String requestBody; // Posted parameters with key, signature and twofa removed. Null for GET.
+    public int responseCode;
+    public String responseMessage;
+    public byte[] responseBody; // Empty if the request failed
+}
@@ -0,0 +1,22 @@
+package se.anyro.bx.snapshot;
+
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.Ticker;
+
+/**
+ * One record read from a snapshot file. Only the field matching the type is set.
+ */
+public class Snapshot {
+
+    public enum Type {
+        ORDER_BOOK, TICKERS, RECENT_TRADES
+    }
+
+    public Type type;
+    public long timeMillis; // When the snapshot was taken
+    public int pairingId; // Zero for tickers
+    public OrderBook orderBook;
+    public Ticker[] tickers;
+    public RecentTrades recentTrades;
+}
@@ -0,0 +1,52 @@
+package se.anyro.bx.snapshot;
+
+/**
+ * Binary format of a snapshot file. A header with magic and version followed by records:
+ * 
+ * <pre>
+ * byte     record type (0 or end of file marks the end)
+ * varlong  time in milliseconds, zigzag delta from the previous record
+ * ...      order book, tickers or recent trades
+ * </pre>
+ * 
+ * Integers are written as unsigned varints, with zigzag encoding for values that can be negative. Decimals are
+ * written as a tag followed by the unscaled value:
+ * 
+ * <pre>
+ * varint   0 for null, 1 for a value too large for a long, otherwise zigzag(scale) + 2
+ * varlong  zigzag delta of the unscaled value from the previous one in the same column, or utf if the tag is 1
+ * </pre>
+ * 
+ * Prices and amounts of consecutive order book levels and trades are close to each other, so the deltas are small.
+ * The columns start over from zero at each record, so every record is decoded the same way no matter what came
+ * before, except for the string dictionary.
+ * <p>
+ * Currency codes and trade types go through a dictionary that grows for the whole file. A string is written as its
+ * index + 1, or as the dictionary size + 1 followed by utf the first time it's seen. 0 means null.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x42585348; // "BXSH"
+    static final int VERSION = 1;
+
+    static final int END = 0;
+    static final int ORDER_BOOK = 1;
+    static final int TICKERS = 2;
+    static final int RECENT_TRADES = 3;
+
+    static final int DECIMAL_NULL = 0;
+    static final int DECIMAL_LARGE = 1;
+
+    // Delta columns. Decimals without a column are written as is.
+    static final int NO_COLUMN = -1;
+    static final int BID_PRICE = 0;
+    static final int BID_AMOUNT = 1;
+    static final int ASK_PRICE = 2;
+    static final int ASK_AMOUNT = 3;
+    static final int TRADE_RATE = 4;
+    static final int TRADE_AMOUNT = 5;
+    static final int COLUMNS = 6;
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,283 @@
+package se.anyro.bx.snapshot;
+
+import static se.anyro.bx.snapshot.SnapshotFormat.ASK_AMOUNT;
+import static se.anyro.bx.snapshot.SnapshotFormat.ASK_PRICE;
+import static se.anyro.bx.snapshot.SnapshotFormat.BID_AMOUNT;
+import static se.anyro.bx.snapshot.SnapshotFormat.BID_PRICE;
+import static se.anyro.bx.snapshot.SnapshotFormat.NO_COLUMN;
+import static se.anyro.bx.snapshot.SnapshotFormat.TRADE_AMOUNT;
+import static se.anyro.bx.snapshot.SnapshotFormat.TRADE_RATE;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import se.anyro.bx.IoUtils;
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.Ticker;
+import se.anyro.bx.types.Ticker.TickerOrderBook;
+import se.anyro.bx.types.Ticker.TickerOrders;
+
+/**
+ * Reads the records of a snapshot file one at a time.
+ */
+public class SnapshotReader implements Closeable {
+
+    private final DataInputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    private final long[] columns = new long[SnapshotFormat.COLUMNS];
+    private long previousTime;
+
+    public SnapshotReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public SnapshotReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != SnapshotFormat.MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != SnapshotFormat.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+    }
+
+    /**
+     * Read all records of a snapshot file.
+     */
+    public static List<Snapshot> readAll(File file) throws IOException {
+        List<Snapshot> snapshots = new ArrayList<>();
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            Snapshot snapshot;
+            while ((snapshot = reader.read()) != null) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return the next record or null at the end of the file
+     */
+    public Snapshot read() throws IOException {
+        int type = in.read();
+        if (type == SnapshotFormat.END || type == -1) {
+            return null; // End marker, or end of file if the writer wasn't closed properly
+        }
+        Snapshot snapshot = new Snapshot();
+        previousTime += IoUtils.unzigzag(IoUtils.readVarLong(in));
+        snapshot.timeMillis = previousTime;
+        Arrays.fill(columns, 0);
+        switch (type) {
+        case SnapshotFormat.ORDER_BOOK:
+            snapshot.type = Snapshot.Type.ORDER_BOOK;
+            snapshot.pairingId = (int) IoUtils.readVarLong(in);
+            snapshot.orderBook = readOrderBook();
+            break;
+        case SnapshotFormat.TICKERS:
+            snapshot.type = Snapshot.Type.TICKERS;
+            snapshot.tickers = readTickers();
+            break;
+        case SnapshotFormat.RECENT_TRADES:
+            snapshot.type = Snapshot.Type.RECENT_TRADES;
+            snapshot.pairingId = (int) IoUtils.readVarLong(in);
+            snapshot.recentTrades = readRecentTrades(snapshot.timeMillis);
+            break;
+        default:
+            throw new IOException("Unknown snapshot record type " + type);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private OrderBook readOrderBook() throws IOException {
+        OrderBook orderBook = new OrderBook();
+        orderBook.bids = readRows(BID_PRICE, BID_AMOUNT);
+        orderBook.asks = readRows(ASK_PRICE, ASK_AMOUNT);
+        return orderBook;
+    }
+
+    private BigDecimal[][] readRows(int priceColumn, int amountColumn) throws IOException {
+        int count = readLength();
+        if (count < 0) {
+            return null;
+        }
+        BigDecimal[][] rows = new BigDecimal[count][];
+        for (int i = 0; i < count; ++i) {
+            int length = readLength();
+            if (length >= 0) {
+                BigDecimal[] row = new BigDecimal[length];
+                for (int j = 0; j < length; ++j) {
+                    row[j] = readDecimal(j == 0 ? priceColumn : amountColumn);
+                }
+                rows[i] = row;
+            }
+        }
+        return rows;
+    }
+
+    private Ticker[] readTickers() throws IOException {
+        int count = readLength();
+        if (count < 0) {
+            return null;
+        }
+        Ticker[] tickers = new Ticker[count];
+        for (int i = 0; i < count; ++i) {
+            Ticker ticker = new Ticker();
+            ticker.pairing_id = (int) IoUtils.readVarLong(in);
+            ticker.primary_currency = readDictionaryString();
+            ticker.secondary_currency = readDictionaryString();
+            ticker.change = readDecimal(NO_COLUMN);
+            ticker.last_price = readDecimal(NO_COLUMN);
+            ticker.volume_24hours = readDecimal(NO_COLUMN);
+            int flags = in.readUnsignedByte();
+            if ((flags & 1) != 0) {
+                ticker.orderbook = new TickerOrderBook();
+                if ((flags & 2) != 0) {
+                    ticker.orderbook.bids = readTickerOrders();
+                }
+                if ((flags & 4) != 0) {
+                    ticker.orderbook.asks = readTickerOrders();
+                }
+            }
+            tickers[i] = ticker;
+        }
+        return tickers;
+    }
+
+    private TickerOrders readTickerOrders() throws IOException {
+        TickerOrders orders = new TickerOrders();
+        orders.total = (int) IoUtils.unzigzag(IoUtils.readVarLong(in));
+        orders.volume = readDecimal(NO_COLUMN);
+        orders.highbid = readDecimal(NO_COLUMN);
+        return orders;
+    }
+
+    private RecentTrades readRecentTrades(long timeMillis) throws IOException {
+        RecentTrades recentTrades = new RecentTrades();
+        int count = readLength();
+        if (count >= 0) {
+            RecentTrades.Trade[] trades = new RecentTrades.Trade[count];
+            long previousId = 0;
+            long previousOrderId = 0;
+            long previousDate = timeMillis;
+            for (int i = 0; i < count; ++i) {
+                RecentTrades.Trade trade = new RecentTrades.Trade();
+                previousId += IoUtils.unzigzag(IoUtils.readVarLong(in));
+                trade.trade_id = (int) previousId;
+                trade.rate = readDecimal(TRADE_RATE);
+                trade.amount = readDecimal(TRADE_AMOUNT);
+                trade.trade_date = readDate(previousDate);
+                if (trade.trade_date != null) {
+                    previousDate = trade.trade_date.getTime();
+                }
+                previousOrderId += IoUtils.unzigzag(IoUtils.readVarLong(in));
+                trade.order_id = (int) previousOrderId;
+                trade.trade_type = readDictionaryString();
+                trade.seconds = (int) IoUtils.unzigzag(IoUtils.readVarLong(in));
+                trades[i] = trade;
+            }
+            recentTrades.trades = trades;
+        }
+        recentTrades.lowask = readOrders(timeMillis, ASK_PRICE, ASK_AMOUNT);
+        recentTrades.highbid = readOrders(timeMillis, BID_PRICE, BID_AMOUNT);
+        return recentTrades;
+    }
+
+    private RecentTrades.Order[] readOrders(long timeMillis, int rateColumn, int amountColumn) throws IOException {
+        int count = readLength();
+        if (count < 0) {
+            return null;
+        }
+        RecentTrades.Order[] orders = new RecentTrades.Order[count];
+        long previousId = 0;
+        long previousDate = timeMillis;
+        for (int i = 0; i < count; ++i) {
+            RecentTrades.Order order = new RecentTrades.Order();
+            previousId += IoUtils.unzigzag(IoUtils.readVarLong(in));
+            order.order_id = (int) previousId;
+            order.rate = readDecimal(rateColumn);
+            order.amount = readDecimal(amountColumn);
+            order.date_added = readDate(previousDate);
+            if (order.date_added != null) {
+                previousDate = order.date_added.getTime();
+            }
+            order.order_type = readDictionaryString();
+            order.display_vol1 = readString();
+            order.display_vol2 = readString();
+            orders[i] = order;
+        }
+        return orders;
+    }
+
+    private Date readDate(long previous) throws IOException {
+        long value = IoUtils.readVarLong(in);
+        return value != 0 ? new Date(previous + IoUtils.unzigzag(value - 1)) : null;
+    }
+
+    private BigDecimal readDecimal(int column) throws IOException {
+        long tag = IoUtils.readVarLong(in);
+        if (tag == SnapshotFormat.DECIMAL_NULL) {
+            return null;
+        }
+        if (tag == SnapshotFormat.DECIMAL_LARGE) {
+            return new BigDecimal(in.readUTF());
+        }
+        int scale = (int) IoUtils.unzigzag(tag - 2);
+        long unscaled = IoUtils.unzigzag(IoUtils.readVarLong(in));
+        if (column != NO_COLUMN) {
+            unscaled += columns[column];
+            columns[column] = unscaled;
+        }
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    private String readDictionaryString() throws IOException {
+        int index = (int) IoUtils.readVarLong(in) - 1;
+        if (index < 0) {
+            return null;
+        }
+        if (index < dictionary.size()) {
+            return dictionary.get(index);
+        }
+        if (index != dictionary.size()) {
+            throw new IOException("Malformed dictionary index " + index);
+        }
+        String value = in.readUTF();
+        dictionary.add(value);
+        return value;
+    }
+
+    private String readString() throws IOException {
+        int length = (int) IoUtils.readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the length of an array or -1 for null
+     */
+    private int readLength() throws IOException {
+        return (int) IoUtils.readVarLong(in) - 1;
+    }
+}
@@ -0,0 +1,263 @@
+package se.anyro.bx.snapshot;
+
+import static se.anyro.bx.snapshot.SnapshotFormat.ASK_AMOUNT;
+import static se.anyro.bx.snapshot.SnapshotFormat.ASK_PRICE;
+import static se.anyro.bx.snapshot.SnapshotFormat.BID_AMOUNT;
+import static se.anyro.bx.snapshot.SnapshotFormat.BID_PRICE;
+import static se.anyro.bx.snapshot.SnapshotFormat.NO_COLUMN;
+import static se.anyro.bx.snapshot.SnapshotFormat.TRADE_AMOUNT;
+import static se.anyro.bx.snapshot.SnapshotFormat.TRADE_RATE;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import se.anyro.bx.IoUtils;
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.Ticker;
+import se.anyro.bx.types.Ticker.TickerOrders;
+
+/**
+ * Writes market data snapshots to a compact binary file, see {@link SnapshotFormat}. Thread-safe.
+ *
+ * <pre>
+ * try (SnapshotWriter writer = new SnapshotWriter(new File("bx.snapshots"))) {
+ *     writer.writeOrderBook(System.currentTimeMillis(), 1, bx.getOrderBook(1));
+ * }
+ * </pre>
+ */
+public class SnapshotWriter implements Closeable, Flushable {
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final long[] columns = new long[SnapshotFormat.COLUMNS];
+    private long previousTime;
+
+    public SnapshotWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    public SnapshotWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(SnapshotFormat.MAGIC);
+        this.out.writeByte(SnapshotFormat.VERSION);
+    }
+
+    /**
+     * @param timeMillis
+     *            When the snapshot was taken
+     */
+    public synchronized void writeOrderBook(long timeMillis, int pairingId, OrderBook orderBook) throws IOException {
+        beginRecord(SnapshotFormat.ORDER_BOOK, timeMillis);
+        IoUtils.writeVarLong(out, pairingId);
+        writeRows(orderBook.bids, BID_PRICE, BID_AMOUNT);
+        writeRows(orderBook.asks, ASK_PRICE, ASK_AMOUNT);
+    }
+
+    /**
+     * @param timeMillis
+     *            When the snapshot was taken
+     * @param tickers
+     *            For instance from {@link se.anyro.bx.BxApi#getMarketData()}. Null entries are left out.
+     */
+    public synchronized void writeTickers(long timeMillis, Ticker[] tickers) throws IOException {
+        beginRecord(SnapshotFormat.TICKERS, timeMillis);
+        if (tickers == null) {
+            writeLength(null);
+            return;
+        }
+        int count = 0;
+        for (Ticker ticker : tickers) {
+            if (ticker != null) {
+                ++count;
+            }
+        }
+        IoUtils.writeVarLong(out, count + 1);
+        for (Ticker ticker : tickers) {
+            if (ticker == null) {
+                continue;
+            }
+            IoUtils.writeVarLong(out, ticker.pairing_id);
+            writeDictionaryString(ticker.primary_currency);
+            writeDictionaryString(ticker.secondary_currency);
+            writeDecimal(ticker.change, NO_COLUMN);
+            writeDecimal(ticker.last_price, NO_COLUMN);
+            writeDecimal(ticker.volume_24hours, NO_COLUMN);
+            if (ticker.orderbook == null) {
+                out.writeByte(0);
+            } else {
+                TickerOrders bids = ticker.orderbook.bids;
+                TickerOrders asks = ticker.orderbook.asks;
+                out.writeByte(1 | (bids != null ? 2 : 0) | (asks != null ? 4 : 0));
+                writeTickerOrders(bids);
+                writeTickerOrders(asks);
+            }
+        }
+    }
+
+    /**
+     * @param timeMillis
+     *            When the snapshot was taken
+     */
+    public synchronized void writeRecentTrades(long timeMillis, int pairingId, RecentTrades recentTrades)
+            throws IOException {
+        beginRecord(SnapshotFormat.RECENT_TRADES, timeMillis);
+        IoUtils.writeVarLong(out, pairingId);
+        RecentTrades.Trade[] trades = recentTrades.trades;
+        writeLength(trades);
+        if (trades != null) {
+            long previousId = 0;
+            long previousOrderId = 0;
+            long previousDate = timeMillis;
+            for (RecentTrades.Trade trade : trades) {
+                IoUtils.writeVarLong(out, IoUtils.zigzag(trade.trade_id - previousId));
+                previousId = trade.trade_id;
+                writeDecimal(trade.rate, TRADE_RATE);
+                writeDecimal(trade.amount, TRADE_AMOUNT);
+                previousDate = writeDate(trade.trade_date, previousDate);
+                IoUtils.writeVarLong(out, IoUtils.zigzag(trade.order_id - previousOrderId));
+                previousOrderId = trade.order_id;
+                writeDictionaryString(trade.trade_type);
+                IoUtils.writeVarLong(out, IoUtils.zigzag(trade.seconds));
+            }
+        }
+        writeOrders(recentTrades.lowask, timeMillis, ASK_PRICE, ASK_AMOUNT);
+        writeOrders(recentTrades.highbid, timeMillis, BID_PRICE, BID_AMOUNT);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.writeByte(SnapshotFormat.END);
+        out.close();
+    }
+
+    private void beginRecord(int type, long timeMillis) throws IOException {
+        out.writeByte(type);
+        IoUtils.writeVarLong(out, IoUtils.zigzag(timeMillis - previousTime));
+        previousTime = timeMillis;
+        Arrays.fill(columns, 0);
+    }
+
+    private void writeRows(BigDecimal[][] rows, int priceColumn, int amountColumn) throws IOException {
+        writeLength(rows);
+        if (rows == null) {
+            return;
+        }
+        for (BigDecimal[] row : rows) {
+            writeLength(row);
+            if (row != null) {
+                for (int i = 0; i < row.length; ++i) {
+                    writeDecimal(row[i], i == 0 ? priceColumn : amountColumn);
+                }
+            }
+        }
+    }
+
+    private void writeTickerOrders(TickerOrders orders) throws IOException {
+        if (orders != null) {
+            IoUtils.writeVarLong(out, IoUtils.zigzag(orders.total));
+            writeDecimal(orders.volume, NO_COLUMN);
+            writeDecimal(orders.highbid, NO_COLUMN);
+        }
+    }
+
+    private void writeOrders(RecentTrades.Order[] orders, long timeMillis, int rateColumn, int amountColumn)
+            throws IOException {
+        writeLength(orders);
+        if (orders == null) {
+            return;
+        }
+        long previousId = 0;
+        long previousDate = timeMillis;
+        for (RecentTrades.Order order : orders) {
+            IoUtils.writeVarLong(out, IoUtils.zigzag(order.order_id - previousId));
+            previousId = order.order_id;
+            writeDecimal(order.rate, rateColumn);
+            writeDecimal(order.amount, amountColumn);
+            previousDate = writeDate(order.date_added, previousDate);
+            writeDictionaryString(order.order_type);
+            writeString(order.display_vol1);
+            writeString(order.display_vol2);
+        }
+    }
+
+    /**
+     * @return the value to compare the next date with
+     */
+    private long writeDate(Date date, long previous) throws IOException {
+        if (date == null) {
+            IoUtils.writeVarLong(out, 0);
+            return previous;
+        }
+        IoUtils.writeVarLong(out, IoUtils.zigzag(date.getTime() - previous) + 1);
+        return date.getTime();
+    }
+
+    private void writeDecimal(BigDecimal value, int column) throws IOException {
+        if (value == null) {
+            IoUtils.writeVarLong(out, SnapshotFormat.DECIMAL_NULL);
+            return;
+        }
+        if (value.unscaledValue().bitLength() > 63) {
+            IoUtils.writeVarLong(out, SnapshotFormat.DECIMAL_LARGE);
+            out.writeUTF(value.toString());
+            return;
+        }
+        IoUtils.writeVarLong(out, IoUtils.zigzag(value.scale()) + 2);
+        long unscaled = value.unscaledValue().longValue();
+        if (column == NO_COLUMN) {
+            IoUtils.writeVarLong(out, IoUtils.zigzag(unscaled));
+        } else {
+            // Wraps around on overflow, which the reader undoes the same way
+            IoUtils.writeVarLong(out, IoUtils.zigzag(unscaled - columns[column]));
+            columns[column] = unscaled;
+        }
+    }
+
+    private void writeDictionaryString(String value) throws IOException {
+        if (value == null) {
+            IoUtils.writeVarLong(out, 0);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            IoUtils.writeVarLong(out, index + 1);
+        } else {
+            index = dictionary.size();
+            dictionary.put(value, index);
+            IoUtils.writeVarLong(out, index + 1);
+            out.writeUTF(value);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            IoUtils.writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        IoUtils.writeVarLong(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private void writeLength(Object[] array) throws IOException {
+        IoUtils.writeVarLong(out, array != null ? array.length + 1 : 0);
+    }
+}
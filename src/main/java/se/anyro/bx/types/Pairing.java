@@ -1,5 +1,6 @@
 package se.anyro.bx.types;
 
+import java.math.BigDecimal;
 
 /**
  * Currency pairing
@@ -8,4 +9,7 @@ public class Pairing {
     public int pairing_id;
     public String primary_currency;
     public String secondary_currency;
-}
\ No newline at end of file
+    public BigDecimal primary_min; // Smallest order in primary currency, if known
+    public BigDecimal secondary_min; // Smallest order in secondary currency, if known
+    public boolean active = true; // Assumed active unless BX says otherwise
+}
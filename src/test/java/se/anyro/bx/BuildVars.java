@@ -4,6 +4,6 @@ public class BuildVars {
     
     // Put your own key and secret here from bx.in.th/account/. For the default tests you need a key with
     // permission for balance and deposit.
-    public static final String API_KEY = ;
-    public static final String API_SECRET = ;
+    public static final String API_KEY = null;
+    public static final String API_SECRET = null;
 }
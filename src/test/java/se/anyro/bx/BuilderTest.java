@@ -0,0 +1,103 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import se.anyro.bx.JsonApi.DecoderMode;
+import se.anyro.bx.replay.ReplayTransport;
+import se.anyro.bx.types.Balance;
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.Ticker;
+
+public class BuilderTest extends TestCase {
+
+    public void testTimeoutsPerCategory() {
+        BxApi bx = new BxApi.Builder().timeouts(500, 2000).timeouts(Endpoint.Category.HISTORY, 5000, 30000).build();
+        assertEquals(500, bx.getConnectionTimeout(Endpoint.ORDER));
+        assertEquals(2000, bx.getReadTimeout(Endpoint.MARKET_DATA));
+        assertEquals(30000, bx.getReadTimeout(Endpoint.TRANSACTION_HISTORY));
+        assertEquals(BxApi.DEFAULT_TIMEOUT, new BxApi().getReadTimeout(Endpoint.TRANSACTION_HISTORY));
+    }
+
+    public void testBaseUrlAndDateFormat() throws IOException {
+        ReplayTransport replay = Traffic.replay(Traffic.get("http://localhost:8080/bx/trade/?pairing=1",
+                "{\"trades\":[{\"trade_id\":1,\"trade_date\":\"19.10.2017 12:34\"}],\"lowask\":[],\"highbid\":[]}"));
+        BxApi bx = new BxApi.Builder().baseUrl("http://localhost:8080/bx").dateFormat("dd.MM.yyyy HH:mm")
+                .transport(replay).build();
+        RecentTrades trades = bx.getRecentTrades(1);
+        assertNotNull(trades.trades[0].trade_date);
+    }
+
+    public void testStreamingDecoder() throws IOException {
+        String url = BxApi.DEFAULT_BASE_URL + "orderbook/?pairing=1";
+        ReplayTransport replay = Traffic.replay(Traffic.get(url, "{\"bids\":[[\"100\",\"1\"]],\"asks\":[]}"),
+                Traffic.get(url, "{\"error\":\"Invalid pairing\"}"));
+        BxApi bx = new BxApi.Builder().transport(replay).decoderMode(DecoderMode.STREAMING).build();
+        OrderBook orderBook = bx.getOrderBook(1);
+        assertEquals("100", orderBook.bids[0][0].toPlainString());
+        try {
+            bx.getOrderBook(1);
+            fail();
+        } catch (BxApiException e) {
+            assertEquals("Invalid pairing", e.getMessage());
+        }
+    }
+
+    public void testStreamingPrivateResponses() throws IOException {
+        String balanceUrl = BxApi.DEFAULT_BASE_URL + "balance/";
+        ReplayTransport replay = Traffic.replay(
+                Traffic.post(balanceUrl, "{\"success\":true,\"balance\":{\"THB\":{\"total\":\"15230.50\","
+                        + "\"available\":\"10230.50\"}},\"error\":null}"),
+                Traffic.post(balanceUrl, "{\"success\":false,\"error\":\"Invalid API key\"}"),
+                Traffic.post(balanceUrl, "{\"success\":\"true\",\"balance\":{},\"error\":null}"),
+                Traffic.get(BxApi.DEFAULT_BASE_URL, "{\"1\":{\"pairing_id\":1,\"last_price\":263000},"
+                        + "\"error\":null}"));
+        BxApi bx = new BxApi.Builder().credentials("my-key", "my-secret").transport(replay)
+                .decoderMode(DecoderMode.STREAMING).build();
+        Map<String, Balance> balances = bx.getBalances(null);
+        assertEquals("10230.50", balances.get("THB").available.toPlainString());
+        try {
+            bx.getBalances(null);
+            fail();
+        } catch (BxApiException e) {
+            assertEquals("Invalid API key", e.getMessage());
+        }
+        assertTrue(bx.getBalances(null).isEmpty()); // Only a literal false counts as a failure
+        // The error field isn't passed on to map responses
+        Ticker[] tickers = bx.getMarketData();
+        assertEquals(1, tickers.length);
+        assertEquals(1, tickers[0].pairing_id);
+        assertEquals(0, replay.remaining());
+    }
+
+    public void testSuccessFalse() throws IOException {
+        for (DecoderMode mode : DecoderMode.values()) {
+            String balanceUrl = BxApi.DEFAULT_BASE_URL + "balance/";
+            ReplayTransport replay = Traffic.replay(Traffic.post(balanceUrl, "{\"success\":false,\"balance\":{}}"),
+                    Traffic.post(balanceUrl, "{\"success\":1,\"balance\":{}}"),
+                    Traffic.post(balanceUrl, "{\"success\":\"false\",\"balance\":{}}"));
+            BxApi bx = new BxApi.Builder().credentials("my-key", "my-secret").transport(replay).decoderMode(mode)
+                    .build();
+            try {
+                bx.getBalances(null);
+                fail(mode.name());
+            } catch (BxApiException e) {
+                assertEquals("Request failed", e.getMessage());
+            }
+            // Only a literal false counts
+            assertTrue(bx.getBalances(null).isEmpty());
+            assertTrue(bx.getBalances(null).isEmpty());
+        }
+    }
+
+    public void testPrivateEndpointNotCached() {
+        try {
+            new BxApi.Builder().coalescingWindow(Endpoint.BALANCE, 100);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package se.anyro.bx;
+
+import junit.framework.TestCase;
+
+public class BxClientPoolTest extends TestCase {
+
+    private final BxClientPool pool = new BxClientPool(Transport.DEFAULT, 5, 10);
+
+    public void testSharedParts() {
+        BxApi first = pool.getAccount("key1", "secret1");
+        BxApi second = pool.getAccount("key2", "secret2");
+        assertSame(first, pool.getAccount("key1", "secret1"));
+        assertNotSame(first, second);
+
+        assertSame(pool.getMetrics(), first.getMetrics());
+        assertSame(pool.getMetrics(), second.getMetrics());
+        assertSame(pool.getMetrics(), pool.getPublic().getMetrics());
+        assertSame(first.getGson(), second.getGson());
+        assertSame(first.getTransport(), second.getTransport());
+    }
+
+    public void testSeparateRateLimiters() {
+        RateLimiter first = pool.getAccount("key1", "secret1").getRateLimiter();
+        RateLimiter second = pool.getAccount("key2", "secret2").getRateLimiter();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertNotSame(first, pool.getPublic().getRateLimiter());
+        assertNull(new BxClientPool().getAccount("key1", "secret1").getRateLimiter());
+    }
+
+    public void testNonceAfterReAdd() {
+        BxApi removed = pool.getAccount("key1", "secret1");
+        long nonce = removed.nextNonce();
+        pool.removeAccount("key1");
+        assertNull(pool.getAccount("key1"));
+
+        BxApi added = pool.getAccount("key1", "secret1");
+        assertNotSame(removed, added);
+        long next = added.nextNonce();
+        assertTrue(next > nonce);
+        assertTrue(removed.nextNonce() > next); // Instances handed out before share the sequence
+
+        // Other accounts have their own sequence
+        BxApi other = pool.getAccount("key2", "secret2");
+        assertEquals(other.nextNonce() + 1, other.nextNonce());
+    }
+
+    public void testSecretMismatch() {
+        BxApi account = pool.getAccount("key1", "secret1");
+        try {
+            pool.getAccount("key1", "other-secret");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertSame(account, pool.getAccount("key1"));
+
+        // A removed account can be added again with a new secret
+        pool.removeAccount("key1");
+        assertNotSame(account, pool.getAccount("key1", "other-secret"));
+    }
+}
@@ -0,0 +1,168 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import se.anyro.bx.OrderValidationException.Reason;
+import se.anyro.bx.types.Balance;
+import se.anyro.bx.types.OrderType;
+import se.anyro.bx.types.Pairing;
+
+public class OrderValidatorTest extends TestCase {
+
+    private final OrderValidator validator = new OrderValidator();
+
+    @Override
+    protected void setUp() {
+        Pairing btc = new Pairing();
+        btc.pairing_id = 1;
+        btc.primary_currency = "THB";
+        btc.secondary_currency = "BTC";
+        btc.primary_min = new BigDecimal("50");
+        btc.secondary_min = new BigDecimal("0.0001");
+        Pairing inactive = new Pairing();
+        inactive.pairing_id = 2;
+        inactive.primary_currency = "THB";
+        inactive.secondary_currency = "XYZ";
+        inactive.active = false;
+        validator.setPairings(new Pairing[] { btc, inactive });
+
+        Map<String, Balance> balances = new HashMap<>();
+        balances.put("THB", balance("1000.50"));
+        balances.put("BTC", balance("0.123456789"));
+        validator.setBalances(balances);
+    }
+
+    public void testValidOrders() {
+        validator.validate(1, OrderType.BUY, new BigDecimal("300"), new BigDecimal("300000.00"));
+        validator.validate(1, OrderType.SELL, new BigDecimal("3000"), new BigDecimal("300000")); // 0.01 BTC
+    }
+
+    public void testRejections() {
+        assertRejected(Reason.INVALID_AMOUNT, 1, OrderType.BUY, "0", "300000");
+        assertRejected(Reason.INVALID_RATE, 1, OrderType.BUY, "300", "-1");
+        assertRejected(Reason.UNKNOWN_PAIRING, 3, OrderType.BUY, "300", "300000");
+        assertRejected(Reason.INACTIVE_PAIRING, 2, OrderType.BUY, "300", "10");
+        assertRejected(Reason.AMOUNT_SCALE, 1, OrderType.BUY, "300.001", "300000");
+        assertRejected(Reason.AMOUNT_SCALE, 1, OrderType.SELL, "3000.001", "300000");
+        assertRejected(Reason.RATE_SCALE, 1, OrderType.SELL, "3000", "300000.125");
+        assertRejected(Reason.BELOW_MINIMUM, 1, OrderType.BUY, "49.99", "300000");
+        assertRejected(Reason.BELOW_MINIMUM, 1, OrderType.BUY, "100", "2000000"); // 0.00005 BTC
+        assertRejected(Reason.BELOW_MINIMUM, 1, OrderType.SELL, "30", "300000");
+        assertRejected(Reason.BELOW_MINIMUM, 1, OrderType.SELL, "100", "2000000"); // 0.00005 BTC
+        assertRejected(Reason.INSUFFICIENT_FUNDS, 1, OrderType.BUY, "1000.51", "300000");
+        assertRejected(Reason.INSUFFICIENT_FUNDS, 1, OrderType.SELL, "37037.04", "300000"); // 0.1234568 BTC
+    }
+
+    public void testSizing() {
+        BigDecimal rate = new BigDecimal("300000");
+        assertEquals(new BigDecimal("1000.50"), validator.getMaxAmount(1, OrderType.BUY, rate));
+        assertEquals(new BigDecimal("37037.03"), validator.getMaxAmount(1, OrderType.SELL, rate));
+        assertEquals(new BigDecimal("37037.03"), validator.roundAmount(1, new BigDecimal("37037.039")));
+        assertEquals(new BigDecimal("300000.12"), validator.roundRate(1, OrderType.BUY, new BigDecimal("300000.129")));
+        assertEquals(new BigDecimal("300000.13"), validator.roundRate(1, OrderType.SELL, new BigDecimal("300000.121")));
+
+    }
+
+    public void testReserve() {
+        BigDecimal rate = new BigDecimal("300000");
+        validator.reserve(1, OrderType.BUY, new BigDecimal("1000"), rate);
+        assertEquals(new BigDecimal("0.50"), validator.getAvailable("THB"));
+        assertRejected(Reason.INSUFFICIENT_FUNDS, 1, OrderType.BUY, "100", "300000");
+
+        validator.reserve(1, OrderType.SELL, new BigDecimal("3000"), rate);
+        assertEquals(new BigDecimal("0.113456789"), validator.getAvailable("BTC"));
+        validator.release(1, OrderType.SELL, new BigDecimal("3000"), rate);
+        assertEquals(new BigDecimal("0.123456789"), validator.getAvailable("BTC"));
+    }
+
+    public void testConcurrentReserve() throws InterruptedException {
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        validator.reserve(1, OrderType.BUY, new BigDecimal("600"), new BigDecimal("300000"));
+                        accepted.incrementAndGet();
+                    } catch (OrderValidationException e) {
+                        assertEquals(Reason.INSUFFICIENT_FUNDS, e.getReason());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, accepted.get()); // Only one fits in 1000.50 THB
+    }
+
+    public void testMissingBalance() {
+        Map<String, Balance> balances = new HashMap<>();
+        balances.put("THB", balance("100"));
+        balances.put("BTC", null);
+        validator.setBalances(balances);
+        assertEquals(BigDecimal.ZERO, validator.getAvailable("BTC"));
+        assertRejected(Reason.INSUFFICIENT_FUNDS, 1, OrderType.SELL, "3000", "300000");
+
+        validator.setBalances(null);
+        assertEquals(BigDecimal.ZERO, validator.getAvailable("THB"));
+    }
+
+    public void testReleaseWhenNotSent() throws IOException {
+        BigDecimal rate = new BigDecimal("300000");
+        BxApi bx = new BxApi(Traffic.replay());
+        bx.setOrderValidator(validator);
+        try {
+            bx.createOrder(1, OrderType.BUY, new BigDecimal("1000"), rate, null);
+            fail();
+        } catch (IllegalStateException e) {
+            // Missing credentials
+        }
+        assertEquals(new BigDecimal("1000.50"), validator.getAvailable("THB"));
+
+        bx = new BxApi("my-key", "my-secret", Traffic.replay());
+        bx.setOrderValidator(validator);
+        try {
+            bx.createOrder(1, OrderType.BUY, new BigDecimal("1000"), rate, null);
+            fail();
+        } catch (IOException e) {
+            assertEquals("End of replay log", e.getMessage()); // Failed before anything was sent
+        }
+        assertEquals(new BigDecimal("1000.50"), validator.getAvailable("THB"));
+    }
+
+    public void testKeepReservationWhenSent() {
+        BxApi bx = new BxApi("my-key", "my-secret", Traffic.replay(Traffic.failure("POST",
+                BxApi.DEFAULT_BASE_URL + "order/", 500)));
+        bx.setOrderValidator(validator);
+        try {
+            bx.createOrder(1, OrderType.BUY, new BigDecimal("1000"), new BigDecimal("300000"), null);
+            fail();
+        } catch (IOException e) {
+            // The order might still have been created
+        }
+        assertEquals(new BigDecimal("0.50"), validator.getAvailable("THB"));
+    }
+
+    private void assertRejected(Reason reason, int pairingId, OrderType type, String amount, String rate) {
+        try {
+            validator.validate(pairingId, type, new BigDecimal(amount), new BigDecimal(rate));
+            fail("Expected " + reason);
+        } catch (OrderValidationException e) {
+            assertEquals(reason, e.getReason());
+        }
+    }
+
+    private static Balance balance(String available) {
+        Balance balance = new Balance();
+        balance.available = new BigDecimal(available);
+        return balance;
+    }
+}
@@ -0,0 +1,101 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import se.anyro.bx.replay.ReplayTransport;
+import se.anyro.bx.replay.TrafficRecord;
+import se.anyro.bx.types.OrderBook;
+
+public class RequestCoalescerTest extends TestCase {
+
+    private static final String ORDER_BOOK_URL = "https://bx.in.th/api/orderbook/?pairing=1";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+    }
+
+    public void testConcurrentCallsShareRequest() throws Exception {
+        ReplayTransport replay = replay(200);
+        final BxApi bx = new BxApi(replay);
+        bx.setCoalescingWindow(Endpoint.ORDER_BOOK, 0);
+
+        List<Future<OrderBook>> results = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            results.add(executor.submit(new Callable<OrderBook>() {
+                @Override
+                public OrderBook call() throws IOException {
+                    return bx.getOrderBook(1);
+                }
+            }));
+        }
+        OrderBook first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<OrderBook> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, replay.remaining());
+    }
+
+    public void testWindowReusesResult() throws IOException {
+        ReplayTransport replay = replay(0);
+        BxApi bx = new BxApi(replay);
+        bx.setCoalescingWindow(Endpoint.ORDER_BOOK, 60000);
+        OrderBook first = bx.getOrderBook(1);
+        assertSame(first, bx.getOrderBook(1));
+
+        bx.setCoalescingWindow(Endpoint.ORDER_BOOK, -1);
+        try {
+            bx.getOrderBook(1);
+            fail();
+        } catch (IOException e) {
+            assertEquals("End of replay log", e.getMessage());
+        }
+    }
+
+    public void testExpiredResultsRemoved() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        coalescer.setWindow(Endpoint.TRADE_HISTORY, 20);
+        for (int day = 1; day <= 10; ++day) {
+            coalescer.call(Endpoint.TRADE_HISTORY, "2017-10-" + day, new RequestCoalescer.Call<String>() {
+                @Override
+                public String call() {
+                    return "trades";
+                }
+            });
+        }
+        assertEquals(10, coalescer.size());
+        Thread.sleep(40);
+        coalescer.call(Endpoint.TRADE_HISTORY, "2017-10-11", new RequestCoalescer.Call<String>() {
+            @Override
+            public String call() {
+                return "trades";
+            }
+        });
+        assertEquals(1, coalescer.size());
+    }
+
+    public void testPrivateEndpointRejected() {
+        try {
+            new BxApi().setCoalescingWindow(Endpoint.ORDER, 10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static ReplayTransport replay(long durationMillis) {
+        TrafficRecord record = Traffic.get(ORDER_BOOK_URL, "{\"bids\":[[\"100\",\"1\"]],\"asks\":[]}");
+        record.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        return Traffic.replay(ReplayTransport.ORIGINAL_SPEED, record);
+    }
+}
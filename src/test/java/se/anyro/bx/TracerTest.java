@@ -0,0 +1,66 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import se.anyro.bx.TraceEvent.Type;
+
+public class TracerTest extends TestCase {
+
+    private final List<Type> types = new ArrayList<>();
+    private final List<TraceEvent> copies = new ArrayList<>();
+
+    private final Tracer tracer = new Tracer() {
+        @Override
+        public void onEvent(TraceEvent event) {
+            types.add(event.type);
+            TraceEvent copy = new TraceEvent();
+            copy.type = event.type;
+            copy.endpoint = event.endpoint;
+            copy.pairingId = event.pairingId;
+            copy.startNanos = event.startNanos;
+            copy.timestampNanos = event.timestampNanos;
+            copy.error = event.error;
+            copies.add(copy);
+        }
+    };
+
+    public void testSuccessfulGet() throws IOException {
+        BxApi bx = new BxApi(Traffic.replay(Traffic.get("https://bx.in.th/api/orderbook/?pairing=1",
+                "{\"bids\":[[\"100\",\"1\"]],\"asks\":[]}")));
+        bx.setTracer(tracer);
+        bx.getOrderBook(1);
+
+        assertEquals(Arrays.asList(Type.REQUEST_BUILT, Type.CONNECTION_ACQUIRED, Type.FIRST_BYTE, Type.PARSE_DONE),
+                types);
+        long previous = 0;
+        for (TraceEvent event : copies) {
+            assertEquals(Endpoint.ORDER_BOOK, event.endpoint);
+            assertEquals(1, event.pairingId);
+            assertTrue(event.getElapsedNanos() >= previous);
+            previous = event.getElapsedNanos();
+        }
+    }
+
+    public void testErrorResponse() {
+        BxApi bx = new BxApi(Traffic.replay(Traffic.get("https://bx.in.th/api/", "{\"error\":\"Invalid request\"}")));
+        bx.setTracer(tracer);
+        try {
+            bx.getMarketData();
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(Type.ERROR, types.get(types.size() - 1));
+        assertNotNull(copies.get(copies.size() - 1).error);
+    }
+
+    public void testNonceOfParameters() {
+        BxApi bx = new BxApi();
+        assertEquals(1234, bx.getNonce("key=abc&nonce=1234&signature=ff"));
+        assertEquals(0, bx.getNonce("key=abc"));
+    }
+}
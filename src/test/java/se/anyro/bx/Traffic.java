@@ -0,0 +1,58 @@
+package se.anyro.bx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import se.anyro.bx.replay.ReplayTransport;
+import se.anyro.bx.replay.TrafficRecord;
+
+/**
+ * Builds replayed BX traffic for the tests.
+ */
+public final class Traffic {
+
+    private Traffic() {
+    }
+
+    /**
+     * @return a successful GET response
+     */
+    public static TrafficRecord get(String url, String json) {
+        return record("GET", url, 200, json);
+    }
+
+    /**
+     * @return a successful POST response
+     */
+    public static TrafficRecord post(String url, String json) {
+        return record("POST", url, 200, json);
+    }
+
+    /**
+     * @return a response with an empty body, typically a server error
+     */
+    public static TrafficRecord failure(String method, String url, int responseCode) {
+        return record(method, url, responseCode, "");
+    }
+
+    public static TrafficRecord record(String method, String url, int responseCode, String json) {
+        TrafficRecord record = new TrafficRecord();
+        record.method = method;
+        record.url = url;
+        record.responseCode = responseCode;
+        record.responseMessage = responseCode < 300 ? "OK" : "Error";
+        record.responseBody = json.getBytes(StandardCharsets.UTF_8);
+        return record;
+    }
+
+    /**
+     * @return a transport replaying the records as fast as possible
+     */
+    public static ReplayTransport replay(TrafficRecord... records) {
+        return replay(ReplayTransport.MAX_SPEED, records);
+    }
+
+    public static ReplayTransport replay(double speed, TrafficRecord... records) {
+        return new ReplayTransport(Arrays.asList(records), speed);
+    }
+}
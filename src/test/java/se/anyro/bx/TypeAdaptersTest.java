@@ -0,0 +1,71 @@
+package se.anyro.bx;
+
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.Ticker;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Compares the hand-written type adapters with Gson's reflective adapter.
+ */
+public class TypeAdaptersTest extends TestCase {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd' 'HH:mm:ss";
+
+    private static final String MARKET_DATA = "{\"1\":{\"pairing_id\":1,\"primary_currency\":\"THB\","
+            + "\"secondary_currency\":\"BTC\",\"change\":-0.5,\"last_price\":\"263000.5\",\"volume_24hours\":12.3,"
+            + "\"unknown\":{\"a\":[1,2]},\"orderbook\":{\"bids\":{\"total\":1200,\"volume\":\"45.1\","
+            + "\"highbid\":262900},\"asks\":{\"total\":\"800\",\"volume\":30.02,\"highbid\":null}}},"
+            + "\"21\":{\"pairing_id\":21,\"primary_currency\":\"THB\",\"secondary_currency\":\"ETH\","
+            + "\"last_price\":15000,\"orderbook\":null}}";
+
+    private static final String RECENT_TRADES = "{\"trades\":[{\"trade_id\":\"123\",\"rate\":\"263000.00\","
+            + "\"amount\":\"0.01\",\"trade_date\":\"2017-10-19 12:34:56\",\"order_id\":\"456\","
+            + "\"trade_type\":\"buy\",\"seconds\":12}],\"lowask\":[{\"order_id\":\"7\",\"rate\":\"263001\","
+            + "\"amount\":\"1.5\",\"date_added\":\"2017-10-19 12:00:00\",\"order_type\":\"sell\","
+            + "\"display_vol1\":\"394,501.50 THB\",\"display_vol2\":\"1.50000000 BTC\"}],\"highbid\":[]}";
+
+    private static final String ORDER_BOOK = "{\"bids\":[[\"262900.00\",\"0.5\"],[\"262800\",\"1.25\"]],"
+            + "\"asks\":[[\"263000\",\"0.1\"]]}";
+
+    private final Gson reflective = new GsonBuilder().setDateFormat(DATE_FORMAT).create();
+    private final Gson generated = new GsonBuilder().setDateFormat(DATE_FORMAT)
+            .registerTypeAdapterFactory(new TypeAdapters()).create();
+
+    public void testMarketData() {
+        BxApi.MarketData expected = reflective.fromJson(MARKET_DATA, BxApi.MarketData.class);
+        BxApi.MarketData actual = generated.fromJson(MARKET_DATA, BxApi.MarketData.class);
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+
+        Ticker ticker = actual.get(1);
+        assertEquals(new BigDecimal("263000.5"), ticker.last_price);
+        assertEquals(800, ticker.orderbook.asks.total);
+        assertNull(ticker.orderbook.asks.highbid);
+        assertNull(actual.get(21).orderbook);
+    }
+
+    public void testRecentTrades() {
+        RecentTrades expected = reflective.fromJson(RECENT_TRADES, RecentTrades.class);
+        RecentTrades actual = generated.fromJson(RECENT_TRADES, RecentTrades.class);
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+        assertEquals(expected.trades[0].trade_date, actual.trades[0].trade_date);
+        assertEquals(0, actual.highbid.length);
+    }
+
+    public void testOrderBook() {
+        OrderBook expected = reflective.fromJson(ORDER_BOOK, OrderBook.class);
+        OrderBook actual = generated.fromJson(ORDER_BOOK, OrderBook.class);
+        assertEquals(reflective.toJson(expected), reflective.toJson(actual));
+        assertEquals(new BigDecimal("1.25"), actual.bids[1][1]);
+    }
+
+    public void testWriteFallsBackToReflection() {
+        OrderBook orderBook = generated.fromJson(ORDER_BOOK, OrderBook.class);
+        assertEquals(reflective.toJson(orderBook), generated.toJson(orderBook));
+    }
+}
@@ -0,0 +1,99 @@
+package se.anyro.bx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import se.anyro.bx.types.OrderBook;
+
+/**
+ * Measures the time to the first fast call with {@link BxApi#warmUp(int, boolean)}. Also used by the appcds Maven
+ * profile to record which classes to put in the shared class archive.
+ * <p>
+ * Usage: {@code java se.anyro.bx.WarmUpBenchmark [--live] [results.properties]}. With --live the warm-up also
+ * connects to BX and the first real call to getMarketData() is timed. The results are written to the properties file
+ * if given, and the exit code is 1 if the first parse after the warm-up wasn't faster than the cold one.
+ */
+public final class WarmUpBenchmark {
+
+    private static final byte[] ORDER_BOOK = ("{\"bids\":[[\"262900.00\",\"0.5\"],[\"262850.00\",\"1.2\"]],"
+            + "\"asks\":[[\"263000.50\",\"0.1\"],[\"263100.00\",\"0.75\"]]}").getBytes(StandardCharsets.UTF_8);
+
+    private static final int STEADY_STATE_CALLS = 1000;
+
+    private WarmUpBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean live = false;
+        File resultFile = null;
+        for (String arg : args) {
+            if (arg.equals("--live")) {
+                live = true;
+            } else {
+                resultFile = new File(arg);
+            }
+        }
+
+        BxApi bx = new BxApi();
+        long coldNanos = timeParse(bx);
+
+        long start = System.nanoTime();
+        bx.warmUp(BxApi.DEFAULT_WARM_UP_ITERATIONS, live);
+        long warmUpNanos = System.nanoTime() - start;
+
+        long firstNanos = timeParse(bx);
+        long sinceJvmStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        long total = 0;
+        for (int i = 0; i < STEADY_STATE_CALLS; ++i) {
+            total += timeParse(bx);
+        }
+
+        Properties results = new Properties();
+        results.setProperty("coldParseMicros", micros(coldNanos));
+        results.setProperty("warmUpMicros", micros(warmUpNanos));
+        results.setProperty("firstParseMicros", micros(firstNanos));
+        results.setProperty("steadyStateParseMicros", micros(total / STEADY_STATE_CALLS));
+        results.setProperty("timeToFirstFastCallMillis", String.valueOf(sinceJvmStart));
+
+        if (live) {
+            start = System.nanoTime();
+            bx.getMarketData();
+            results.setProperty("firstMarketDataMicros", micros(System.nanoTime() - start));
+        }
+
+        System.out.println("Cold parse:              " + results.getProperty("coldParseMicros") + " us");
+        System.out.println("Warm-up:                 " + results.getProperty("warmUpMicros") + " us");
+        System.out.println("First parse after:       " + results.getProperty("firstParseMicros") + " us");
+        System.out.println("Steady state parse:      " + results.getProperty("steadyStateParseMicros") + " us");
+        System.out.println("Time to first fast call: " + sinceJvmStart + " ms since JVM start");
+        if (live) {
+            System.out.println("First getMarketData():   " + results.getProperty("firstMarketDataMicros") + " us");
+        }
+
+        if (resultFile != null) {
+            try (OutputStream out = new FileOutputStream(resultFile)) {
+                results.store(out, "BxApi warm-up");
+            }
+        }
+        if (firstNanos >= coldNanos) {
+            System.err.println("The warm-up didn't make the first parse faster");
+            System.exit(1);
+        }
+    }
+
+    private static long timeParse(BxApi bx) throws IOException {
+        long start = System.nanoTime();
+        bx.parse(ORDER_BOOK, OrderBook.class);
+        return System.nanoTime() - start;
+    }
+
+    private static String micros(long nanos) {
+        return String.valueOf(nanos / 1000);
+    }
+}
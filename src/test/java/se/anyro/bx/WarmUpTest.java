@@ -0,0 +1,61 @@
+package se.anyro.bx;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import se.anyro.bx.JsonApi.DecoderMode;
+import se.anyro.bx.replay.ReplayTransport;
+import se.anyro.bx.types.OrderBook;
+
+import com.google.gson.JsonSyntaxException;
+
+public class WarmUpTest extends TestCase {
+
+    public void testWarmUpWithoutNetwork() throws IOException {
+        final List<URL> opened = new ArrayList<>();
+        BxApi bx = new BxApi("my-key", "my-secret", new Transport() {
+            @Override
+            public HttpURLConnection open(URL url) throws IOException {
+                opened.add(url);
+                throw new IOException("No network in fixture mode");
+            }
+        });
+        bx.warmUp();
+        bx.warmUp(10, false);
+        assertTrue(opened.isEmpty());
+    }
+
+    public void testWarmUpUsesDecoderMode() throws IOException {
+        // Only the streaming decoder hides the success field from map responses
+        byte[] pairings = "{\"success\":true,\"1\":{\"pairing_id\":1}}".getBytes(StandardCharsets.UTF_8);
+        BxApi bx = new BxApi.Builder().decoderMode(DecoderMode.STREAMING).build();
+        bx.warmUp(1, false);
+        assertEquals(1, bx.parse(pairings, BxApi.Pairings.class).size());
+        try {
+            new BxApi().parse(pairings, BxApi.Pairings.class);
+            fail();
+        } catch (JsonSyntaxException e) {
+            // Expected
+        }
+        try {
+            bx.parse("{\"error\":\"Invalid pairing\"}".getBytes(StandardCharsets.UTF_8), OrderBook.class);
+            fail();
+        } catch (BxApiException e) {
+            assertEquals("Invalid pairing", e.getMessage());
+        }
+    }
+
+    public void testWarmUpConnect() throws IOException {
+        ReplayTransport replay = Traffic.replay(Traffic.get("http://localhost/api/pairing/",
+                "{\"1\":{\"pairing_id\":1,\"primary_currency\":\"THB\",\"secondary_currency\":\"BTC\"}}"));
+
+        BxApi bx = new BxApi.Builder().baseUrl("http://localhost/api/").transport(replay).build();
+        bx.warmUp(1, true);
+        assertEquals(0, replay.remaining()); // Exactly one call to BX
+    }
+}
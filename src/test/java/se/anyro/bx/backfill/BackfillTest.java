@@ -0,0 +1,186 @@
+package se.anyro.bx.backfill;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+import se.anyro.bx.BxApi;
+import se.anyro.bx.Traffic;
+import se.anyro.bx.replay.ReplayTransport;
+import se.anyro.bx.replay.TrafficRecord;
+import se.anyro.bx.types.TradeData;
+import se.anyro.bx.types.Transaction;
+
+public class BackfillTest extends TestCase {
+
+    private static final String TRADE_HISTORY_URL = BxApi.DEFAULT_BASE_URL + "tradehistory/?pairing=1&date=";
+    private static final String HISTORY_URL = BxApi.DEFAULT_BASE_URL + "history/";
+    private static final String TRADE_DATA = "{\"success\":true,\"data\":{\"avg\":\"263000\",\"volume\":\"12.5\"}}";
+
+    private final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final List<String> tradeDays = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Integer> transactions = Collections.synchronizedList(new ArrayList<Integer>());
+    private File checkpointFile;
+
+    private final BackfillSink sink = new BackfillSink() {
+        @Override
+        public void onTradeData(int pairingId, String date, TradeData data) {
+            tradeDays.add(date);
+        }
+
+        @Override
+        public void onTransactions(Date start, Date end, Transaction[] result) {
+            for (Transaction transaction : result) {
+                transactions.add(transaction.transaction_id);
+            }
+        }
+    };
+
+    @Override
+    protected void setUp() throws IOException {
+        checkpointFile = File.createTempFile("backfill", ".checkpoint");
+        checkpointFile.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        checkpointFile.delete();
+    }
+
+    public void testResumeFromCheckpoint() throws Exception {
+        ReplayTransport replay = Traffic.replay(get("2017-10-19", TRADE_DATA), get("2017-10-20", null),
+                get("2017-10-20", null), get("2017-10-21", TRADE_DATA));
+        Backfill backfill = backfill(replay);
+        BackfillReport report = backfill.run(sink);
+        assertEquals(3, report.total);
+        assertEquals(0, report.skipped);
+        assertEquals(2, report.completed);
+        assertEquals(1, report.failed); // Gave up after one retry
+        assertNotNull(report.firstError);
+        assertEquals(0, replay.remaining());
+        assertEquals(2, Files.readAllLines(checkpointFile.toPath(), StandardCharsets.UTF_8).size());
+
+        // A new run with the same checkpoint only fetches the failed day
+        tradeDays.clear();
+        replay = Traffic.replay(get("2017-10-20", TRADE_DATA));
+        report = backfill(replay).run(sink);
+        assertEquals(2, report.skipped);
+        assertEquals(1, report.completed);
+        assertEquals(0, report.failed);
+        assertEquals(0, replay.remaining());
+        assertEquals("[2017-10-20]", tradeDays.toString());
+
+        // Nothing left to do
+        report = backfill(Traffic.replay()).run(sink);
+        assertEquals(3, report.skipped);
+        assertEquals(0, report.completed);
+    }
+
+    public void testRetryBackoff() throws Exception {
+        ReplayTransport replay = Traffic.replay(get("2017-10-19", null), get("2017-10-19", null),
+                get("2017-10-19", TRADE_DATA));
+        Backfill backfill = new Backfill(new BxApi(replay), checkpointFile, 1, null);
+        backfill.setMaxRetries(2);
+        backfill.setRetryDelay(20);
+        backfill.addTradeData(1, date("2017-10-19 00:00:00"), date("2017-10-19 00:00:00"));
+        long start = System.nanoTime();
+        BackfillReport report = backfill.run(sink);
+        assertTrue(System.nanoTime() - start >= 60000000L); // 20 + 40 ms
+        assertEquals(1, report.completed);
+        assertEquals(0, report.failed);
+    }
+
+    public void testTransactionWindowBoundaries() throws Exception {
+        // BX includes the transaction at 2017-10-20 00:00:00 in both windows
+        ReplayTransport replay = Traffic.replay(
+                post(transactions(1, "2017-10-19 08:00:00", 2, "2017-10-20 00:00:00")),
+                post(transactions(2, "2017-10-20 00:00:00", 3, "2017-10-21 00:00:00")));
+        Backfill backfill = new Backfill(new BxApi("my-key", "my-secret", replay), checkpointFile, 1, null);
+        backfill.addTransactionHistory(date("2017-10-19 00:00:00"), date("2017-10-21 00:00:00"), 1, null);
+        BackfillReport report = backfill.run(sink);
+        assertEquals(2, report.completed);
+        assertEquals("[1, 2, 3]", transactions.toString());
+    }
+
+    public void testUndatedTransactionInLastWindow() throws Exception {
+        String undated = "{\"transaction_id\":4,\"currency\":\"THB\",\"amount\":\"100\",\"type\":\"deposit\"}";
+        ReplayTransport replay = Traffic.replay(
+                post("{\"success\":true,\"transactions\":[" + transaction(1, "2017-10-19 08:00:00") + "," + undated
+                        + "],\"error\":null}"),
+                post("{\"success\":true,\"transactions\":[" + undated + "," + transaction(3, "2017-10-20 08:00:00")
+                        + "],\"error\":null}"));
+        Backfill backfill = new Backfill(new BxApi("my-key", "my-secret", replay), checkpointFile, 2, null);
+        backfill.addTransactionHistory(date("2017-10-19 00:00:00"), date("2017-10-21 00:00:00"), 1, null);
+        BackfillReport report = backfill.run(sink);
+        assertEquals(2, report.completed);
+        assertEquals(0, replay.remaining());
+        assertEquals("[1, 4, 3]", transactions.toString()); // Windows in order on one lane
+    }
+
+    public void testCheckpointFailureNotRetried() throws Exception {
+        ReplayTransport replay = Traffic.replay(get("2017-10-19", TRADE_DATA));
+        Backfill backfill = new Backfill(new BxApi(replay), checkpointFile, 1, null) {
+            @Override
+            Checkpoint openCheckpoint() throws IOException {
+                return new Checkpoint(checkpointFile) {
+                    @Override
+                    synchronized void markDone(String key) throws IOException {
+                        throw new IOException("Disk full");
+                    }
+                };
+            }
+        };
+        backfill.setRetryDelay(1);
+        backfill.addTradeData(1, date("2017-10-19 00:00:00"), date("2017-10-19 00:00:00"));
+        BackfillReport report = backfill.run(sink);
+        assertEquals(1, report.completed);
+        assertEquals(1, report.uncheckpointed);
+        assertEquals(0, report.failed);
+        assertEquals("Disk full", report.firstError.getMessage());
+        assertEquals("[2017-10-19]", tradeDays.toString()); // Delivered once
+        assertEquals(0, replay.remaining());
+    }
+
+    private Backfill backfill(ReplayTransport replay) throws ParseException {
+        Backfill backfill = new Backfill(new BxApi(replay), checkpointFile, 1, null);
+        backfill.setMaxRetries(1);
+        backfill.setRetryDelay(1);
+        backfill.addTradeData(1, date("2017-10-19 12:00:00"), date("2017-10-21 00:00:00"));
+        return backfill;
+    }
+
+    private Date date(String date) throws ParseException {
+        return format.parse(date);
+    }
+
+    private static String transactions(int firstId, String firstDate, int secondId, String secondDate) {
+        return "{\"success\":true,\"transactions\":[" + transaction(firstId, firstDate) + ","
+                + transaction(secondId, secondDate) + "],\"error\":null}";
+    }
+
+    private static String transaction(int id, String date) {
+        return "{\"transaction_id\":" + id + ",\"currency\":\"THB\",\"amount\":\"100\",\"date\":\"" + date
+                + "\",\"type\":\"deposit\"}";
+    }
+
+    /**
+     * @param json
+     *            Response body or null for a server error
+     */
+    private static TrafficRecord get(String day, String json) {
+        String url = TRADE_HISTORY_URL + day;
+        return json != null ? Traffic.get(url, json) : Traffic.failure("GET", url, 500);
+    }
+
+    private static TrafficRecord post(String json) {
+        return Traffic.post(HISTORY_URL, json);
+    }
+}
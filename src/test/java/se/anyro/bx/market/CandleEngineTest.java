@@ -0,0 +1,93 @@
+package se.anyro.bx.market;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import se.anyro.bx.types.RecentTrades.Trade;
+
+public class CandleEngineTest extends TestCase {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long START = 1508400000000L; // Even hour
+
+    private final CandleEngine engine = new CandleEngine(null);
+    private final Candle candle = new Candle();
+
+    public void testDuplicatesIgnored() {
+        Trade[] trades = { trade(3, START + 2000, "102", "1"), trade(2, START + 1000, "101", "2"),
+                trade(1, START, "100", "3") };
+        assertEquals(3, engine.onTrades(1, trades));
+        assertEquals(0, engine.onTrades(1, trades));
+
+        Trade[] next = { trade(4, START + 3000, "99", "4"), trades[0], trades[1] };
+        assertEquals(1, engine.onTrades(1, next));
+
+        CandleSeries minutes = engine.getSeries(1, CandleInterval.ONE_MINUTE);
+        assertEquals(1, minutes.size());
+        assertTrue(minutes.getLatest(candle));
+        assertEquals(START, candle.time);
+        assertEquals(100.0, candle.open);
+        assertEquals(102.0, candle.high);
+        assertEquals(99.0, candle.low);
+        assertEquals(99.0, candle.close);
+        assertEquals(10.0, candle.volume);
+        assertEquals(4, candle.trades);
+
+        assertEquals(4, engine.getSeries(1, CandleInterval.ONE_SECOND).size());
+    }
+
+    public void testRingBufferWraps() {
+        CandleSeries series = new CandleSeries(CandleInterval.ONE_MINUTE, 3);
+        for (int i = 0; i < 5; ++i) {
+            series.add(START + i * MINUTE, 100 + i, 1);
+        }
+        assertEquals(3, series.size());
+        assertTrue(series.get(0, candle));
+        assertEquals(START + 4 * MINUTE, candle.time);
+        assertTrue(series.get(2, candle));
+        assertEquals(102.0, candle.open);
+        assertFalse(series.get(3, candle));
+    }
+
+    public void testLateTradeIgnored() {
+        CandleSeries series = new CandleSeries(CandleInterval.ONE_MINUTE, 10);
+        assertTrue(series.add(START + MINUTE, 100, 1));
+        assertFalse(series.add(START, 90, 1));
+        assertTrue(series.getLatest(candle));
+        assertEquals(100.0, candle.low);
+    }
+
+    public void testInsertLateTrade() {
+        CandleSeries series = new CandleSeries(CandleInterval.ONE_MINUTE, 3);
+        series.add(START + 10000, 100, 1);
+        series.add(START + 2 * MINUTE, 102, 1);
+        assertTrue(series.insert(START + 5000, 95, 2)); // Before the first trade of the first minute
+        assertTrue(series.insert(START + MINUTE, 101, 1)); // Missing minute between the two
+        assertEquals(3, series.size());
+
+        assertTrue(series.get(2, candle));
+        assertEquals(START, candle.time);
+        assertEquals(95.0, candle.open);
+        assertEquals(100.0, candle.close);
+        assertEquals(95.0, candle.low);
+        assertEquals(3.0, candle.volume);
+        assertTrue(series.get(1, candle));
+        assertEquals(START + MINUTE, candle.time);
+        assertEquals(101.0, candle.open);
+        assertTrue(series.get(0, candle));
+        assertEquals(START + 2 * MINUTE, candle.time);
+
+        // Full, so a trade older than all candles is dropped
+        assertFalse(series.insert(START - MINUTE, 90, 1));
+    }
+
+    private static Trade trade(int id, long time, String rate, String amount) {
+        Trade trade = new Trade();
+        trade.trade_id = id;
+        trade.trade_date = new Date(time);
+        trade.rate = new BigDecimal(rate);
+        trade.amount = new BigDecimal(amount);
+        return trade;
+    }
+}
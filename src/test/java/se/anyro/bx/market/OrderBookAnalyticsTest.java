@@ -0,0 +1,120 @@
+package se.anyro.bx.market;
+
+import java.math.BigDecimal;
+
+import junit.framework.TestCase;
+import se.anyro.bx.types.OrderBook;
+
+public class OrderBookAnalyticsTest extends TestCase {
+
+    private static final double DELTA = 1e-9;
+
+    private final OrderBookAnalytics analytics = new OrderBookAnalytics();
+
+    @Override
+    protected void setUp() {
+        analytics.update(orderBook(new String[][] { { "99", "1" }, { "98", "2" }, { "95", "3" } },
+                new String[][] { { "100", "1" }, { "101", "1" }, { "105", "2" } }));
+    }
+
+    public void testCosts() {
+        assertEquals(100.0, analytics.getCostToBuy(1), DELTA);
+        assertEquals(100 + 101 + 0.5 * 105, analytics.getCostToBuy(2.5), DELTA);
+        assertEquals(105.0, analytics.getAskPriceAtDepth(2.5), DELTA);
+        assertEquals(101.0, analytics.getAskPriceAtDepth(2), DELTA);
+        assertTrue(Double.isNaN(analytics.getCostToBuy(4.1)));
+
+        assertEquals(99 + 2 * 98, analytics.getProceedsToSell(3), DELTA);
+        assertEquals((99 + 2 * 98) / 3.0, analytics.getSellVwap(3), DELTA);
+        assertEquals(1 - (99 + 2 * 98) / 3.0 / 99, analytics.getSellSlippage(3), DELTA);
+        assertEquals(100.5 / 100 - 1, analytics.getBuySlippage(2), DELTA);
+    }
+
+    public void testImbalance() {
+        assertEquals(0.0, analytics.getImbalance(1), DELTA);
+        assertEquals((3 - 2) / 5.0, analytics.getImbalance(2), DELTA);
+        assertEquals((6 - 4) / 10.0, analytics.getImbalance(10), DELTA);
+    }
+
+    public void testIncrementalUpdate() {
+        analytics.update(orderBook(new String[][] { { "99", "1" }, { "98", "4" } },
+                new String[][] { { "100", "1" }, { "101", "1" }, { "105", "2" }, { "110", "5" } }));
+        assertEquals(5.0, analytics.getBidDepth(), DELTA);
+        assertEquals(9.0, analytics.getAskDepth(), DELTA);
+        assertEquals(100 + 101 + 2 * 105 + 110, analytics.getCostToBuy(5), DELTA);
+        assertEquals(99 + 98 * 2, analytics.getProceedsToSell(3), DELTA);
+
+        analytics.update(orderBook(new String[0][], new String[][] { { "102", "1" } }));
+        assertTrue(Double.isNaN(analytics.getBestBid()));
+        assertEquals(102.0, analytics.getBestAsk(), DELTA);
+        assertEquals(-1.0, analytics.getImbalance(5), DELTA);
+    }
+
+    public void testMissingRows() {
+        OrderBook orderBook = orderBook(new String[][] { { "99", "1" }, { "98", "2" } },
+                new String[][] { { "100", "1" }, { "101", "1" } });
+        orderBook.bids[0] = null;
+        orderBook.asks = new BigDecimal[][] { orderBook.asks[0], null, { new BigDecimal("102") }, orderBook.asks[1] };
+        analytics.update(orderBook);
+        assertEquals(98.0, analytics.getBestBid(), DELTA);
+        assertEquals(2.0, analytics.getBidDepth(), DELTA);
+        assertEquals(2.0, analytics.getAskDepth(), DELTA);
+        assertEquals(100 + 101, analytics.getCostToBuy(2), DELTA);
+    }
+
+    public void testInvalidVwapAmount() {
+        try {
+            analytics.getBuyVwap(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            analytics.getSellVwap(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertTrue(Double.isNaN(analytics.getBuyVwap(100)));
+    }
+
+    public void testInvalidCostAmount() {
+        double[] invalid = { 0, -1, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (double amount : invalid) {
+            try {
+                analytics.getCostToBuy(amount);
+                fail("Buy " + amount);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            try {
+                analytics.getProceedsToSell(amount);
+                fail("Sell " + amount);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            try {
+                analytics.getBuyVwap(amount);
+                fail("Vwap " + amount);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        assertTrue(Double.isNaN(analytics.getProceedsToSell(100))); // Not enough depth
+    }
+
+    private static OrderBook orderBook(String[][] bids, String[][] asks) {
+        OrderBook orderBook = new OrderBook();
+        orderBook.bids = rows(bids);
+        orderBook.asks = rows(asks);
+        return orderBook;
+    }
+
+    private static BigDecimal[][] rows(String[][] values) {
+        BigDecimal[][] rows = new BigDecimal[values.length][];
+        for (int i = 0; i < values.length; ++i) {
+            rows[i] = new BigDecimal[] { new BigDecimal(values[i][0]), new BigDecimal(values[i][1]) };
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,37 @@
+package se.anyro.bx.market;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class PollerTest extends TestCase {
+
+    public void testLifecycle() throws InterruptedException {
+        final CountDownLatch polled = new CountDownLatch(2);
+        Poller poller = new Poller("test") {
+            @Override
+            void pollInBackground() throws IOException {
+                polled.countDown();
+                throw new IOException("Offline");
+            }
+        };
+        assertNull(poller.getLastError());
+        poller.startPolling(1);
+        try {
+            poller.startPolling(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertTrue(polled.await(5, TimeUnit.SECONDS)); // Still polling after the first error
+        assertEquals("Offline", poller.getLastError().getMessage());
+
+        poller.stop();
+        assertNull(poller.getLastError());
+        poller.stop();
+        poller.startPolling(1000); // Can be started again
+        poller.stop();
+    }
+}
@@ -0,0 +1,78 @@
+package se.anyro.bx.market;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import se.anyro.bx.types.Ticker;
+import se.anyro.bx.types.Ticker.TickerOrderBook;
+import se.anyro.bx.types.Ticker.TickerOrders;
+
+public class TickerFeedTest extends TestCase {
+
+    private final TickerFeed feed = new TickerFeed(null);
+    private final List<TickerDelta> deltas = new ArrayList<>();
+
+    @Override
+    protected void setUp() {
+        feed.addListener(new TickerListener() {
+            @Override
+            public void onTickerChanged(TickerDelta delta) {
+                deltas.add(delta);
+            }
+        });
+    }
+
+    public void testOnlyChangesDelivered() {
+        assertEquals(2, feed.onTickers(new Ticker[] { ticker(1, "100", "10", "99", "101"),
+                ticker(21, "50", "5", "49", "51") }));
+        assertTrue(deltas.get(0).hasChanged(TickerDelta.NEW));
+
+        deltas.clear();
+        assertEquals(0, feed.onTickers(new Ticker[] { ticker(1, "100.00", "10", "99", "101"),
+                ticker(21, "50", "5", "49", "51") }));
+        assertTrue(deltas.isEmpty());
+
+        assertEquals(1, feed.onTickers(new Ticker[] { ticker(1, "100", "10", "99", "101"),
+                ticker(21, "52", "5", "49", "52.5") }));
+        TickerDelta delta = deltas.get(0);
+        assertEquals(21, delta.pairing_id);
+        assertEquals(TickerDelta.LAST_PRICE | TickerDelta.ASK, delta.changed);
+        assertEquals(new BigDecimal("2"), delta.last_price);
+        assertEquals(new BigDecimal("1.5"), delta.lowask);
+        assertEquals(0, delta.volume_24hours.signum());
+        assertEquals(new BigDecimal("52"), feed.getTicker(21).last_price);
+    }
+
+    public void testNullTickerSkipped() {
+        assertEquals(1, feed.onTickers(new Ticker[] { null, ticker(1, "100", "10", "99", "101") }));
+        assertEquals(1, deltas.size());
+        assertEquals(1, deltas.get(0).pairing_id);
+    }
+
+    public void testIntMapGrows() {
+        IntMap<String> map = new IntMap<>(2);
+        for (int i = -100; i <= 100; ++i) {
+            assertNull(map.put(i, "v" + i));
+        }
+        assertEquals(201, map.size());
+        assertEquals("v0", map.get(0));
+        assertEquals("v-100", map.get(-100));
+        assertEquals("v100", map.put(100, "x"));
+        assertNull(map.get(101));
+    }
+
+    private static Ticker ticker(int pairingId, String lastPrice, String volume, String bid, String ask) {
+        Ticker ticker = new Ticker();
+        ticker.pairing_id = pairingId;
+        ticker.last_price = new BigDecimal(lastPrice);
+        ticker.volume_24hours = new BigDecimal(volume);
+        ticker.orderbook = new TickerOrderBook();
+        ticker.orderbook.bids = new TickerOrders();
+        ticker.orderbook.bids.highbid = new BigDecimal(bid);
+        ticker.orderbook.asks = new TickerOrders();
+        ticker.orderbook.asks.highbid = new BigDecimal(ask);
+        return ticker;
+    }
+}
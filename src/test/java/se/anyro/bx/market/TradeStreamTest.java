@@ -0,0 +1,187 @@
+package se.anyro.bx.market;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import se.anyro.bx.BxApi;
+import se.anyro.bx.Transport;
+import se.anyro.bx.types.RecentTrades.Trade;
+
+public class TradeStreamTest extends TestCase {
+
+    private static final long START = 1508400000000L;
+
+    private final TradeStream stream = new TradeStream(null, 100, 1600, 256);
+    private final List<Integer> delivered = new ArrayList<>();
+    private final List<String> gaps = new ArrayList<>();
+
+    @Override
+    protected void setUp() {
+        stream.addListener(new TradeListener() {
+            @Override
+            public void onTrade(int pairingId, Trade trade) {
+                delivered.add(trade.trade_id);
+            }
+
+            @Override
+            public void onGap(int pairingId, int lastTradeId, int nextTradeId) {
+                gaps.add(lastTradeId + "-" + nextTradeId);
+            }
+        });
+    }
+
+    public void testDeduplication() {
+        assertEquals(10, stream.onRecentTrades(1, batch(110, 101)));
+        assertEquals(3, stream.onRecentTrades(1, batch(113, 104)));
+        assertEquals(101, (int) delivered.get(0));
+        assertEquals(113, (int) delivered.get(delivered.size() - 1));
+        assertEquals(13, delivered.size());
+        assertTrue(gaps.isEmpty());
+
+        // Backfilled trades are only delivered if not seen
+        assertEquals(1, stream.onTrades(1, new Trade[] { trade(112), trade(95) }));
+        assertEquals(95, (int) delivered.get(delivered.size() - 1));
+    }
+
+    public void testGapDetected() {
+        stream.onRecentTrades(1, batch(110, 101));
+        long interval = stream.getPollInterval(1);
+        assertEquals(10, stream.onRecentTrades(1, batch(130, 121)));
+        assertEquals(1, stream.getGapCount(1));
+        assertEquals(10, stream.getMissedTrades(1));
+        assertEquals("110-121", gaps.get(0));
+        assertTrue(stream.getPollInterval(1) < interval);
+
+        // A backfill of the gap doesn't count as a new gap
+        assertEquals(10, stream.onTrades(1, batch(120, 111)));
+        assertEquals(1, stream.getGapCount());
+        assertEquals(10, stream.getMissedTrades());
+    }
+
+    public void testPollInterval() {
+        stream.onRecentTrades(2, batch(105, 101));
+        long interval = stream.getPollInterval(2);
+        assertEquals(6, stream.onRecentTrades(2, batch(111, 102)));
+        assertTrue(stream.getPollInterval(2) < interval);
+        assertEquals(0, stream.getGapCount(2)); // Overlaps the previous batch
+
+        interval = stream.getPollInterval(2);
+        stream.onRecentTrades(2, batch(111, 102));
+        assertTrue(stream.getPollInterval(2) > interval);
+    }
+
+    public void testIdWindow() {
+        IdWindow window = new IdWindow(64);
+        assertTrue(window.add(1000));
+        assertTrue(window.add(990));
+        assertFalse(window.add(990));
+        assertTrue(window.add(1050));
+        assertTrue(window.contains(990)); // Below the window now
+        assertFalse(window.contains(1000 + 64));
+        assertTrue(window.add(1000 + 64));
+        assertTrue(window.add(5000));
+        assertFalse(window.contains(4999));
+        assertEquals(5000, window.getHighest());
+    }
+
+    public void testIdWindowCapacity() {
+        assertEquals(64, new IdWindow(1).getCapacity());
+        assertEquals(64, new IdWindow(64).getCapacity());
+        assertEquals(128, new IdWindow(65).getCapacity());
+        assertEquals(128, new IdWindow(128).getCapacity());
+        assertEquals(256, new IdWindow(129).getCapacity());
+
+        IdWindow window = new IdWindow(64);
+        window.add(1000);
+        assertFalse(window.contains(1000 - 63)); // Oldest id in the window
+        assertTrue(window.contains(1000 - 64)); // Below the window
+    }
+
+    public void testCandleEngineListener() {
+        CandleEngine engine = new CandleEngine(null);
+        stream.addListener(engine);
+        stream.onRecentTrades(1, batch(110, 101));
+        CandleSeries seconds = engine.getSeries(1, CandleInterval.ONE_SECOND);
+        assertEquals(10, seconds.size());
+    }
+
+    public void testGapBackfillUpdatesCandles() {
+        CandleEngine engine = new CandleEngine(null);
+        stream.addListener(engine);
+        stream.onRecentTrades(1, batch(110, 101));
+        stream.onRecentTrades(1, batch(130, 121)); // Gap of 111 to 120
+        CandleSeries minutes = engine.getSeries(1, CandleInterval.ONE_MINUTE);
+        Candle candle = new Candle();
+        assertTrue(minutes.get(1, candle)); // Trades 101 to 119
+        assertEquals(10.0, candle.volume);
+        assertTrue(minutes.get(0, candle)); // Trades 120 to 130
+        assertEquals(10.0, candle.volume);
+        assertEquals(trade(121).rate.doubleValue(), candle.open);
+
+        stream.onTrades(1, batch(120, 111));
+        assertTrue(minutes.get(1, candle));
+        assertEquals(19.0, candle.volume);
+        assertEquals(19, candle.trades);
+        assertTrue(minutes.get(0, candle));
+        assertEquals(11.0, candle.volume);
+        assertEquals(trade(120).rate.doubleValue(), candle.open); // The backfilled trade is the first of the minute
+        assertEquals(trade(130).rate.doubleValue(), candle.close);
+        assertEquals(30, engine.getSeries(1, CandleInterval.ONE_SECOND).size());
+    }
+
+    public void testPollBackoff() {
+        final AtomicInteger calls = new AtomicInteger();
+        BxApi bx = new BxApi(new Transport() {
+            @Override
+            public HttpURLConnection open(URL url) throws IOException {
+                calls.incrementAndGet();
+                throw new IOException("Connection refused");
+            }
+        });
+        TradeStream failing = new TradeStream(bx, 100, 10000, 256);
+        failing.onRecentTrades(1, batch(110, 101));
+        failing.onRecentTrades(1, batch(120, 111));
+        long interval = failing.getPollInterval(1);
+        try {
+            failing.poll(1);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(1, calls.get());
+        assertEquals(Math.min(10000, interval * 2), failing.getPollInterval(1));
+        try {
+            assertEquals(0, failing.pollDue()); // Not due again yet
+        } catch (IOException e) {
+            fail();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * @return trades with ids from first down to last, newest first like BX returns them
+     */
+    private static Trade[] batch(int first, int last) {
+        Trade[] trades = new Trade[first - last + 1];
+        for (int i = 0; i < trades.length; ++i) {
+            trades[i] = trade(first - i);
+        }
+        return trades;
+    }
+
+    private static Trade trade(int id) {
+        Trade trade = new Trade();
+        trade.trade_id = id;
+        trade.rate = new BigDecimal(100 + id % 7);
+        trade.amount = BigDecimal.ONE;
+        trade.trade_date = new Date(START + id * 1000L);
+        return trade;
+    }
+}
@@ -0,0 +1,96 @@
+package se.anyro.bx.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+import se.anyro.bx.BxApi;
+import se.anyro.bx.BxApiException;
+import se.anyro.bx.Traffic;
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.OrderType;
+
+public class ReplayTransportTest extends TestCase {
+
+    private static final String ORDER_BOOK_URL = "https://bx.in.th/api/orderbook/?pairing=1";
+    private static final String ORDER_URL = "https://bx.in.th/api/order/";
+
+    public void testReplayAndRecord() throws IOException {
+        TrafficRecord post = Traffic.post(ORDER_URL, "{\"success\":false,\"error\":\"Insufficient balance\"}");
+        ReplayTransport replay = Traffic.replay(
+                Traffic.get(ORDER_BOOK_URL, "{\"bids\":[[\"100\",\"1\"]],\"asks\":[[\"101\",\"2\"]]}"), post);
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        TrafficLogWriter writer = new TrafficLogWriter(log);
+        BxApi bx = new BxApi("my-key", "my-secret", new RecordingTransport(replay, writer));
+
+        OrderBook orderBook = bx.getOrderBook(1);
+        assertEquals(new BigDecimal("101"), orderBook.asks[0][0]);
+        try {
+            bx.createOrder(1, OrderType.BUY, BigDecimal.TEN, BigDecimal.ONE, null);
+            fail();
+        } catch (BxApiException e) {
+            assertEquals("Insufficient balance", e.getMessage());
+        }
+        assertEquals(0, replay.remaining());
+        writer.close();
+
+        try (TrafficLogReader reader = new TrafficLogReader(new ByteArrayInputStream(log.toByteArray()))) {
+            TrafficRecord get = reader.read();
+            assertEquals(ORDER_BOOK_URL, get.url);
+            assertNull(get.requestBody);
+            assertEquals(200, get.responseCode);
+
+            TrafficRecord recorded = reader.read();
+            assertEquals("POST", recorded.method);
+            assertTrue(recorded.requestBody.startsWith("key=-&nonce="));
+            assertTrue(recorded.requestBody.contains("&signature=-&pairing=1&type=buy"));
+            assertEquals(new String(post.responseBody, StandardCharsets.UTF_8),
+                    new String(recorded.responseBody, StandardCharsets.UTF_8));
+            assertNull(reader.read());
+        }
+    }
+
+    public void testOutOfSync() throws IOException {
+        BxApi bx = new BxApi(Traffic.replay(Traffic.get(ORDER_BOOK_URL, "{}")));
+        try {
+            bx.getOrderBook(2);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Replay out of sync"));
+        }
+    }
+
+    public void testOriginalTiming() throws IOException {
+        TrafficRecord first = Traffic.get(ORDER_BOOK_URL, "{}");
+        TrafficRecord second = Traffic.get(ORDER_BOOK_URL, "{}");
+        first.startNanos = 1000000000L;
+        second.startNanos = 1080000000L; // 80 ms later, for instance paced by a rate limiter
+        BxApi bx = new BxApi(Traffic.replay(ReplayTransport.ORIGINAL_SPEED, first, second));
+
+        long start = System.nanoTime();
+        bx.getOrderBook(1);
+        bx.getOrderBook(1);
+        assertTrue(System.nanoTime() - start >= 80000000L);
+    }
+
+    public void testLongStrings() throws IOException {
+        StringBuilder params = new StringBuilder("key=-&nonce=1&signature=-");
+        while (params.length() < 70000) {
+            params.append("&note=\u0e1a\u0e32\u0e17");
+        }
+        TrafficRecord record = Traffic.post(ORDER_URL, "{}");
+        record.requestBody = params.toString();
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try (TrafficLogWriter writer = new TrafficLogWriter(log)) {
+            writer.write(record);
+        }
+        try (TrafficLogReader reader = new TrafficLogReader(new ByteArrayInputStream(log.toByteArray()))) {
+            assertEquals(record.requestBody, reader.read().requestBody);
+        }
+    }
+}
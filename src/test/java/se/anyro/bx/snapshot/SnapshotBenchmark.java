@@ -0,0 +1,98 @@
+package se.anyro.bx.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import se.anyro.bx.BxApi;
+import se.anyro.bx.types.OrderBook;
+
+/**
+ * Compares the size and decode speed of snapshot files with the raw JSON of the same order books, parsed the same
+ * way as BxApi does. Usage: {@code java se.anyro.bx.snapshot.SnapshotBenchmark [books] [levels]}
+ */
+public final class SnapshotBenchmark {
+
+    private static final int ROUNDS = 10;
+
+    private SnapshotBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int levels = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        byte[][] json = new byte[books][];
+        Random random = new Random(42);
+        long jsonBytes = 0;
+        for (int i = 0; i < books; ++i) {
+            json[i] = orderBookJson(random, levels).getBytes(StandardCharsets.UTF_8);
+            jsonBytes += json[i].length;
+        }
+
+        JsonDecoder decoder = new JsonDecoder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(out)) {
+            for (int i = 0; i < books; ++i) {
+                writer.writeOrderBook(1508400000000L + i * 1000, 1, decoder.decode(json[i]));
+            }
+        }
+        byte[] snapshots = out.toByteArray();
+
+        long jsonNanos = Long.MAX_VALUE;
+        long snapshotNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round) {
+            long start = System.nanoTime();
+            for (byte[] book : json) {
+                decoder.decode(book);
+            }
+            jsonNanos = Math.min(jsonNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            try (SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(snapshots))) {
+                while (reader.read() != null) {
+                    // Just decode
+                }
+            }
+            snapshotNanos = Math.min(snapshotNanos, System.nanoTime() - start);
+        }
+
+        System.out.println(books + " order books with " + levels + " levels per side");
+        System.out.println("JSON:     " + jsonBytes / 1024 + " kB, decoded in " + jsonNanos / 1000000 + " ms");
+        System.out.println("Snapshot: " + snapshots.length / 1024 + " kB, decoded in " + snapshotNanos / 1000000
+                + " ms");
+        System.out.printf("Size %.1f%% of JSON, decoding %.1fx faster%n", 100.0 * snapshots.length / jsonBytes,
+                (double) jsonNanos / snapshotNanos);
+    }
+
+    private static String orderBookJson(Random random, int levels) {
+        StringBuilder json = new StringBuilder("{\"bids\":[");
+        appendSide(json, random, levels, 262900, -1);
+        json.append("],\"asks\":[");
+        appendSide(json, random, levels, 263000, 1);
+        return json.append("]}").toString();
+    }
+
+    private static void appendSide(StringBuilder json, Random random, int levels, long startCents, int direction) {
+        long cents = startCents * 100;
+        for (int i = 0; i < levels; ++i) {
+            if (i > 0) {
+                json.append(',');
+            }
+            cents += direction * (1 + random.nextInt(5000));
+            long satoshis = 1 + random.nextInt(200000000);
+            json.append("[\"").append(cents / 100).append('.').append(String.format("%02d", cents % 100));
+            json.append("\",\"").append(satoshis / 100000000).append('.');
+            json.append(String.format("%08d", satoshis % 100000000)).append("\"]");
+        }
+    }
+
+    // Gives access to the parser and type adapters used by BxApi
+    private static class JsonDecoder extends BxApi {
+        OrderBook decode(byte[] json) throws IOException {
+            return parse(json, OrderBook.class);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package se.anyro.bx.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import se.anyro.bx.types.OrderBook;
+import se.anyro.bx.types.RecentTrades;
+import se.anyro.bx.types.Ticker;
+
+import com.google.gson.Gson;
+
+public class SnapshotTest extends TestCase {
+
+    private static final String ORDER_BOOK = "{\"bids\":[[\"262900.00\",\"0.5\"],[\"262850.5\",\"1.25\"],"
+            + "[\"1E+3\",\"123456789012345678901234567890\"]],\"asks\":[[\"263000\",\"0.10000000\"]]}";
+
+    private static final String TICKERS = "[{\"pairing_id\":1,\"primary_currency\":\"THB\","
+            + "\"secondary_currency\":\"BTC\",\"change\":-0.5,\"last_price\":263000.5,\"volume_24hours\":12.3,"
+            + "\"orderbook\":{\"bids\":{\"total\":1200,\"volume\":45.1,\"highbid\":262900},\"asks\":{\"total\":800,"
+            + "\"volume\":30.02}}},{\"pairing_id\":21,\"primary_currency\":\"THB\",\"secondary_currency\":\"ETH\","
+            + "\"last_price\":15000}]";
+
+    private static final String RECENT_TRADES = "{\"trades\":[{\"trade_id\":123,\"rate\":263000.00,"
+            + "\"amount\":0.01,\"order_id\":456,\"trade_type\":\"buy\",\"seconds\":12},{\"trade_id\":124,"
+            + "\"rate\":262999.5,\"amount\":0.2,\"order_id\":450,\"trade_type\":\"sell\",\"seconds\":3}],"
+            + "\"lowask\":[{\"order_id\":7,\"rate\":263001,\"amount\":1.5,\"order_type\":\"sell\","
+            + "\"display_vol1\":\"394,501.50 THB\",\"display_vol2\":\"1.50000000 BTC\"}]}";
+
+    private final Gson gson = new Gson();
+
+    public void testRoundTrip() throws IOException {
+        OrderBook orderBook = gson.fromJson(ORDER_BOOK, OrderBook.class);
+        Ticker[] tickers = gson.fromJson(TICKERS, Ticker[].class);
+        RecentTrades recentTrades = gson.fromJson(RECENT_TRADES, RecentTrades.class);
+        recentTrades.trades[0].trade_date = new Date(1508400000000L);
+        recentTrades.trades[1].trade_date = new Date(1508399990000L);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(bytes)) {
+            writer.writeOrderBook(1508400001000L, 1, orderBook);
+            writer.writeTickers(1508400002000L, tickers);
+            writer.writeRecentTrades(1508400000500L, 1, recentTrades);
+            writer.writeTickers(1508400003000L, tickers);
+        }
+
+        try (SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Snapshot snapshot = reader.read();
+            assertEquals(Snapshot.Type.ORDER_BOOK, snapshot.type);
+            assertEquals(1508400001000L, snapshot.timeMillis);
+            assertEquals(1, snapshot.pairingId);
+            assertEquals(gson.toJson(orderBook), gson.toJson(snapshot.orderBook));
+            assertEquals(new BigDecimal("0.10000000"), snapshot.orderBook.asks[0][1]);
+
+            snapshot = reader.read();
+            assertEquals(Snapshot.Type.TICKERS, snapshot.type);
+            assertEquals(gson.toJson(tickers), gson.toJson(snapshot.tickers));
+
+            snapshot = reader.read();
+            assertEquals(Snapshot.Type.RECENT_TRADES, snapshot.type);
+            assertEquals(1508400000500L, snapshot.timeMillis);
+            assertEquals(gson.toJson(recentTrades), gson.toJson(snapshot.recentTrades));
+            assertEquals(1508399990000L, snapshot.recentTrades.trades[1].trade_date.getTime());
+            assertNull(snapshot.recentTrades.highbid);
+
+            snapshot = reader.read();
+            assertEquals(1508400003000L, snapshot.timeMillis);
+            assertEquals("ETH", snapshot.tickers[1].secondary_currency);
+            assertNull(reader.read());
+        }
+    }
+
+    public void testNullTickerSkipped() throws IOException {
+        Ticker[] tickers = gson.fromJson(TICKERS, Ticker[].class);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(bytes)) {
+            writer.writeTickers(1508400002000L, new Ticker[] { tickers[0], null, tickers[1] });
+        }
+
+        try (SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Snapshot snapshot = reader.read();
+            assertEquals(gson.toJson(tickers), gson.toJson(snapshot.tickers));
+            assertNull(reader.read());
+        }
+    }
+
+    public void testNotASnapshotFile() {
+        try {
+            new SnapshotReader(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }));
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}